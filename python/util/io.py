@@ -1,7 +1,9 @@
+import json
 import os
 import re
 from collections.abc import Iterable
 
+import numpy as np
 import pandas as pd
 
 
@@ -23,3 +25,47 @@ def read_comparison_csv(comparison_file, excluded_types: Iterable[str] = ()):
     df["student1"] = df["folder1"].apply(extract_student)
     df["student2"] = df["folder2"].apply(extract_student)
     return df[list(df.columns)[-2:] + list(df.columns)[:-2]]  # Reorder columns for better readability
+
+
+def open_comparison_columns(comparison_dir) -> tuple[dict, list[str]]:
+    """
+    Memory-maps all columns of a comparison directory written by the Java ``ColumnarWriter`` without copying them.
+    Returns a dictionary of column name to NumPy array (dictionary IDs for the string columns, float64 values for the
+    metric columns and uint8 flags for "approximate") and the list of dictionary strings (ID = index).
+    """
+    with open(os.path.join(comparison_dir, "schema.json"), encoding="utf-8") as f:
+        schema = json.load(f)
+    with open(os.path.join(comparison_dir, "dictionary.jsonl"), encoding="utf-8") as f:
+        dictionary = [json.loads(line) for line in f]
+    rows = schema["rows"]
+
+    def memmap(file_name, dtype):
+        if rows == 0:
+            return np.empty(0, dtype=dtype)  # np.memmap cannot map empty files
+        return np.memmap(os.path.join(comparison_dir, file_name), dtype=dtype, mode="r", shape=(rows,))
+
+    columns = {name: memmap(f"{name}.i32", "<i4") for name in schema["idColumns"]}
+    columns.update({name: memmap(f"metric_{name}.f64", "<f8") for name in schema["metrics"]})
+    columns["approximate"] = memmap("approximate.u8", "u1")
+    return columns, dictionary
+
+
+def read_comparison_columns(comparison_dir, excluded_types: Iterable[str] = ()):
+    """
+    Same as ``read_comparison_csv``, but reads a comparison directory written by the Java ``ColumnarWriter``. The
+    string columns are categoricals that share the dictionary of the directory (no string parsing per row), and the
+    student columns are read as well instead of being computed.
+    """
+    columns, dictionary = open_comparison_columns(comparison_dir)
+    categories = pd.Index(dictionary)
+    # The dictionary ID columns are the only int32 columns
+    df = pd.DataFrame({
+        name: pd.Categorical.from_codes(values, categories=categories) if values.dtype == np.int32 else values
+        for name, values in columns.items()
+    }, copy=False)
+    df["approximate"] = df["approximate"].astype(bool)
+    if excluded_types:
+        df = df[~df["type1"].isin(excluded_types) & ~df["type2"].isin(excluded_types)]
+    # Same column order as read_comparison_csv
+    first = ["student1", "student2", "folder1", "folder2", "file1", "file2", "type1", "type2"]
+    return df[first + [c for c in df.columns if c not in first]]
@@ -0,0 +1,87 @@
+package benchmark;
+
+import ast.ASTRenamer;
+import ast.Type;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Benchmark state with two parsed submissions, which are either synthetic submissions (see
+ * {@link SyntheticSubmissions}) with the same number of types, or the two small handwritten submissions of the same
+ * assignment that are bundled as resources (<code>sample/submission1</code> and <code>sample/submission2</code>),
+ * where some types were copied with renamed identifiers and reordered methods, and the others were written
+ * independently.
+ */
+@State(Scope.Benchmark)
+public class ParsedSubmissions {
+	
+	/**
+	 * The source files of each bundled sample submission.
+	 */
+	private static final List<String> SAMPLE_FILES = List.of("Account.java", "Bank.java", "Main.java", "Transaction.java");
+	
+	/**
+	 * The number of types of each synthetic submission, or <code>sample</code> for the bundled sample submissions.
+	 */
+	@Param({"10", "100", "1000", "sample"})
+	public String submissions;
+	
+	public Path tmpDir;
+	public Path folder1;
+	public Path folder2;
+	public List<Type> types1;
+	public List<Type> types2;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		tmpDir = Files.createTempDirectory("jmh-submissions");
+		if (submissions.equals("sample")) {
+			folder1 = copySample("submission1", tmpDir);
+			folder2 = copySample("submission2", tmpDir);
+		} else {
+			int numTypes = Integer.parseInt(submissions);
+			folder1 = SyntheticSubmissions.write(tmpDir.resolve("submission1"), numTypes, 1);
+			folder2 = SyntheticSubmissions.write(tmpDir.resolve("submission2"), numTypes, 2);
+		}
+		types1 = new ASTRenamer(folder1.toString(), Set.of(), false, false).getTypes();
+		types2 = new ASTRenamer(folder2.toString(), Set.of(), false, false).getTypes();
+	}
+	
+	/**
+	 * Copies the bundled sample submission <code>name</code> from the classpath to a new folder in
+	 * <code>parent</code>, since the types are parsed from folders.
+	 */
+	private static Path copySample(String name, Path parent) throws IOException {
+		Path folder = Files.createDirectories(parent.resolve(name));
+		for (String file : SAMPLE_FILES) {
+			try (InputStream in = ParsedSubmissions.class.getResourceAsStream("/sample/" + name + "/" + file)) {
+				if (in == null) {
+					throw new IOException("missing sample resource: " + name + "/" + file);
+				}
+				Files.copy(in, folder.resolve(file));
+			}
+		}
+		return folder;
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticSubmissions.delete(tmpDir);
+	}
+	
+	/**
+	 * Returns a copy of the <code>i</code>-th type of <code>types</code> (modulo its size) without any computed
+	 * features, so that the memoization of {@link ast.TypeFeatures} does not hide the cost of computing them.
+	 */
+	public static Type fresh(List<Type> types, int i) {
+		Type type = types.get(i % types.size());
+		return new Type(type.original(), type.renamed());
+	}
+	
+}
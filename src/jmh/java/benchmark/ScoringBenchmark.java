@@ -0,0 +1,87 @@
+package benchmark;
+
+import ast.ASTRenamer;
+import ast.ASTUtil;
+import ast.Type;
+import comparison.TypeMatcher;
+import comparison.scoring.FlatTreeDiff;
+import comparison.scoring.metrics.ASTDiffMetricScorer;
+import comparison.scoring.metrics.JaccardMetricScorer;
+import comparison.scoring.metrics.JaroWinklerMetricScorer;
+import comparison.scoring.metrics.MetricScorer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the scoring and matching hot paths of a folder comparison. Each scoring benchmark scores a single type
+ * pair (cycling through all pairs of the two submissions of {@link ParsedSubmissions}), including the computation of
+ * all features the scorer needs. {@link #findMatchingType(ParsedSubmissions)} matches a single type against all types
+ * of the other submission, whose features are reused across invocations like in an actual folder comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+	
+	private final MetricScorer astDiffScorer = new ASTDiffMetricScorer(true);
+	private final MetricScorer jaccardScorer = new JaccardMetricScorer(true);
+	private final MetricScorer jaroWinklerScorer = new JaroWinklerMetricScorer(true);
+	private final TypeMatcher typeMatcher = new TypeMatcher();
+	private final TypeMatcher prunedTypeMatcher = new TypeMatcher(10);
+	private int next;
+	
+	@Benchmark
+	public double astDiffMetric(ParsedSubmissions submissions) {
+		return score(astDiffScorer, submissions);
+	}
+	
+	@Benchmark
+	public int flatTreeDiff(ParsedSubmissions submissions) {
+		int i = next++;
+		return FlatTreeDiff.rootOperations(ParsedSubmissions.fresh(submissions.types1, i).getFeatures(true).getFlatTree(),
+				ParsedSubmissions.fresh(submissions.types2, i).getFeatures(true).getFlatTree());
+	}
+	
+	@Benchmark
+	public double jaccardMetric(ParsedSubmissions submissions) {
+		return score(jaccardScorer, submissions);
+	}
+	
+	@Benchmark
+	public double jaroWinklerMetric(ParsedSubmissions submissions) {
+		return score(jaroWinklerScorer, submissions);
+	}
+	
+	@Benchmark
+	public int countElements(ParsedSubmissions submissions) {
+		return ASTUtil.countElements(submissions.types1.get(next++ % submissions.types1.size()).original());
+	}
+	
+	@Benchmark
+	public Type findMatchingType(ParsedSubmissions submissions) {
+		return typeMatcher.findMatchingType(ParsedSubmissions.fresh(submissions.types1, next++), submissions.types2);
+	}
+	
+	@Benchmark
+	public Type findMatchingTypeTop10(ParsedSubmissions submissions) {
+		return prunedTypeMatcher.findMatchingType(ParsedSubmissions.fresh(submissions.types1, next++), submissions.types2);
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<Type> astRenamer(ParsedSubmissions submissions) {
+		return new ASTRenamer(submissions.folder1.toString(), Set.of(), false, false).getTypes();
+	}
+	
+	private double score(MetricScorer scorer, ParsedSubmissions submissions) {
+		int i = next++;
+		return scorer.computeComparisonScore(ParsedSubmissions.fresh(submissions.types1, i), ParsedSubmissions.fresh(submissions.types2, i));
+	}
+	
+}
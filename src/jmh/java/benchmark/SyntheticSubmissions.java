@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic submissions, i.e., folders of Java source files with typical student code (fields, constructors,
+ * loops, conditions, string building). Two submissions generated with the same number of types but different seeds
+ * share the same overall structure but differ in details, similar to submissions of the same assignment.
+ */
+public class SyntheticSubmissions {
+	
+	private SyntheticSubmissions() {
+	}
+	
+	/**
+	 * Writes a synthetic submission with <code>numTypes</code> top-level types to the new folder <code>folder</code>.
+	 *
+	 * @param folder   The folder to write the source files to (must not exist yet)
+	 * @param numTypes The number of types of the submission
+	 * @param seed     The seed that determines the details of the generated code
+	 * @return <code>folder</code>
+	 * @throws IOException In case writing the source files fails
+	 */
+	public static Path write(Path folder, int numTypes, long seed) throws IOException {
+		Files.createDirectories(folder);
+		Random random = new Random(seed);
+		for (int i = 0; i < numTypes; i++) {
+			String name = "Type" + i;
+			Files.writeString(folder.resolve(name + ".java"), generateType(name, i, numTypes, random));
+		}
+		return folder;
+	}
+	
+	private static String generateType(String name, int index, int numTypes, Random random) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("import java.util.ArrayList;\n");
+		sb.append("import java.util.List;\n\n");
+		sb.append("public class ").append(name).append(" {\n\n");
+		int numFields = 2 + random.nextInt(4);
+		for (int f = 0; f < numFields; f++) {
+			sb.append("\tprivate ").append(f % 2 == 0 ? "int" : "String").append(" field").append(f).append(";\n");
+		}
+		// Reference another type, so that the renaming has to deal with dependencies between types
+		String other = "Type" + ((index + 1) % numTypes);
+		sb.append("\tprivate List<").append(other).append("> others = new ArrayList<>();\n\n");
+		sb.append("\tpublic ").append(name).append("(int field0) {\n");
+		sb.append("\t\tthis.field0 = field0;\n");
+		sb.append("\t}\n\n");
+		int numMethods = 3 + random.nextInt(5);
+		for (int m = 0; m < numMethods; m++) {
+			sb.append(generateMethod("method" + m, other, random));
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+	
+	private static String generateMethod(String name, String other, Random random) {
+		return switch (random.nextInt(4)) {
+			case 0 -> "\tpublic int " + name + "(int[] values) {\n" +
+					"\t\tint sum = 0;\n" +
+					"\t\tfor (int i = 0; i < values.length; i++) {\n" +
+					"\t\t\tif (values[i] > " + random.nextInt(10) + ") {\n" +
+					"\t\t\t\tsum += values[i] * field0;\n" +
+					"\t\t\t}\n" +
+					"\t\t}\n" +
+					"\t\treturn sum;\n" +
+					"\t}\n\n";
+			case 1 -> "\tpublic String " + name + "(String prefix) {\n" +
+					"\t\tStringBuilder sb = new StringBuilder(prefix);\n" +
+					"\t\tfor (" + other + " o : others) {\n" +
+					"\t\t\tsb.append(o.toString()).append(\"" + (char) ('a' + random.nextInt(26)) + "\");\n" +
+					"\t\t}\n" +
+					"\t\treturn sb.toString();\n" +
+					"\t}\n\n";
+			case 2 -> "\tpublic boolean " + name + "(int x, int y) {\n" +
+					"\t\tint d = x - y;\n" +
+					"\t\twhile (d > 0) {\n" +
+					"\t\t\td -= " + (1 + random.nextInt(5)) + ";\n" +
+					"\t\t}\n" +
+					"\t\treturn d == 0 || x == field0;\n" +
+					"\t}\n\n";
+			default -> "\tpublic void " + name + "(" + other + " o) {\n" +
+					"\t\tif (o != null && !others.contains(o)) {\n" +
+					"\t\t\tothers.add(o);\n" +
+					"\t\t} else {\n" +
+					"\t\t\tSystem.out.println(\"duplicate \" + " + random.nextInt(100) + ");\n" +
+					"\t\t}\n" +
+					"\t}\n\n";
+		};
+	}
+	
+	/**
+	 * Deletes <code>folder</code> including all of its content.
+	 */
+	public static void delete(Path folder) throws IOException {
+		try (var paths = Files.walk(folder)) {
+			for (Path path : paths.sorted((p1, p2) -> p2.compareTo(p1)).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.List;
+
+public class Account {
+
+	private final String owner;
+	private final String iban;
+	private double balance;
+	private final List<Transaction> transactions = new ArrayList<>();
+
+	public Account(String owner, String iban) {
+		this.owner = owner;
+		this.iban = iban;
+		this.balance = 0;
+	}
+
+	public void deposit(double amount) {
+		if (amount <= 0) {
+			throw new IllegalArgumentException("amount must be positive");
+		}
+		balance += amount;
+		transactions.add(new Transaction(null, this, amount));
+	}
+
+	public boolean withdraw(double amount) {
+		if (amount <= 0 || amount > balance) {
+			return false;
+		}
+		balance -= amount;
+		transactions.add(new Transaction(this, null, amount));
+		return true;
+	}
+
+	public List<Transaction> getTransactions() {
+		return transactions;
+	}
+
+	public double getBalance() {
+		return balance;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public String getIban() {
+		return iban;
+	}
+
+	@Override
+	public String toString() {
+		return owner + " (" + iban + "): " + String.format("%.2f", balance);
+	}
+}
@@ -0,0 +1,55 @@
+import java.util.HashMap;
+import java.util.Map;
+
+public class Bank {
+
+	private final String name;
+	private final Map<String, Account> accounts = new HashMap<>();
+	private int nextNumber = 1;
+
+	public Bank(String name) {
+		this.name = name;
+	}
+
+	public Account openAccount(String owner) {
+		String iban = "DE" + String.format("%08d", nextNumber++);
+		Account account = new Account(owner, iban);
+		accounts.put(iban, account);
+		return account;
+	}
+
+	public boolean transfer(String fromIban, String toIban, double amount) {
+		Account from = accounts.get(fromIban);
+		Account to = accounts.get(toIban);
+		if (from == null || to == null) {
+			return false;
+		}
+		if (!from.withdraw(amount)) {
+			return false;
+		}
+		to.deposit(amount);
+		return true;
+	}
+
+	public double getTotalBalance() {
+		double total = 0;
+		for (Account account : accounts.values()) {
+			total += account.getBalance();
+		}
+		return total;
+	}
+
+	public Account findRichest() {
+		Account richest = null;
+		for (Account account : accounts.values()) {
+			if (richest == null || account.getBalance() > richest.getBalance()) {
+				richest = account;
+			}
+		}
+		return richest;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
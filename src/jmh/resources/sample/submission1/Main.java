@@ -0,0 +1,20 @@
+public class Main {
+
+	public static void main(String[] args) {
+		Bank bank = new Bank("Sample Bank");
+		Account alice = bank.openAccount("Alice");
+		Account bob = bank.openAccount("Bob");
+		alice.deposit(100);
+		bob.deposit(50);
+		if (!bank.transfer(alice.getIban(), bob.getIban(), 30)) {
+			System.out.println("Transfer failed");
+		}
+		System.out.println(alice);
+		System.out.println(bob);
+		System.out.println("Total: " + bank.getTotalBalance());
+		System.out.println("Richest: " + bank.findRichest().getOwner());
+		for (Transaction transaction : bob.getTransactions()) {
+			System.out.println(transaction);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+import java.time.LocalDateTime;
+
+public class Transaction {
+
+	private final Account from;
+	private final Account to;
+	private final double amount;
+	private final LocalDateTime time;
+
+	public Transaction(Account from, Account to, double amount) {
+		this.from = from;
+		this.to = to;
+		this.amount = amount;
+		this.time = LocalDateTime.now();
+	}
+
+	public boolean isDeposit() {
+		return from == null;
+	}
+
+	public boolean isWithdrawal() {
+		return to == null;
+	}
+
+	public double getAmount() {
+		return amount;
+	}
+
+	public LocalDateTime getTime() {
+		return time;
+	}
+
+	@Override
+	public String toString() {
+		String source = from == null ? "cash" : from.getIban();
+		String target = to == null ? "cash" : to.getIban();
+		return time + ": " + source + " -> " + target + " " + amount;
+	}
+}
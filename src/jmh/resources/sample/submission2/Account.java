@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.List;
+
+public class Account {
+
+	private final String holder;
+	private final String number;
+	private double money;
+	private final List<Transaction> history = new ArrayList<>();
+
+	public Account(String holder, String number) {
+		this.holder = holder;
+		this.number = number;
+		this.money = 0;
+	}
+
+	public String getHolder() {
+		return holder;
+	}
+
+	public String getNumber() {
+		return number;
+	}
+
+	public double getMoney() {
+		return money;
+	}
+
+	public void deposit(double value) {
+		if (value <= 0) {
+			throw new IllegalArgumentException("value must be positive");
+		}
+		money += value;
+		history.add(new Transaction(Transaction.Kind.DEPOSIT, value, number));
+	}
+
+	public boolean withdraw(double value) {
+		if (value <= 0 || value > money) {
+			return false;
+		}
+		money -= value;
+		history.add(new Transaction(Transaction.Kind.WITHDRAWAL, value, number));
+		return true;
+	}
+
+	public List<Transaction> getHistory() {
+		return history;
+	}
+
+	@Override
+	public String toString() {
+		return holder + " (" + number + "): " + String.format("%.2f", money);
+	}
+}
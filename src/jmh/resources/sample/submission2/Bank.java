@@ -0,0 +1,46 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+public class Bank {
+
+	private final List<Account> accounts = new ArrayList<>();
+	private final String title;
+
+	public Bank(String title) {
+		this.title = title;
+	}
+
+	public Account createAccount(String holder) {
+		Account account = new Account(holder, "AT" + (1000 + accounts.size()));
+		accounts.add(account);
+		return account;
+	}
+
+	private Optional<Account> find(String number) {
+		return accounts.stream().filter(a -> a.getNumber().equals(number)).findFirst();
+	}
+
+	public boolean transfer(String from, String to, double value) {
+		Optional<Account> source = find(from);
+		Optional<Account> target = find(to);
+		if (source.isEmpty() || target.isEmpty() || !source.get().withdraw(value)) {
+			return false;
+		}
+		target.get().deposit(value);
+		return true;
+	}
+
+	public double sum() {
+		return accounts.stream().mapToDouble(Account::getMoney).sum();
+	}
+
+	public Account richest() {
+		return accounts.stream().max(Comparator.comparingDouble(Account::getMoney)).orElse(null);
+	}
+
+	public String getTitle() {
+		return title;
+	}
+}
@@ -0,0 +1,16 @@
+public class Main {
+
+	public static void main(String[] args) {
+		Bank bank = new Bank("My Bank");
+		Account a = bank.createAccount("Carol");
+		Account b = bank.createAccount("Dave");
+		a.deposit(200);
+		b.deposit(20);
+		boolean ok = bank.transfer(a.getNumber(), b.getNumber(), 75);
+		System.out.println(ok ? "Transfer done" : "Transfer failed");
+		System.out.println(a + "\n" + b);
+		System.out.println("Sum: " + bank.sum());
+		System.out.println("Richest: " + bank.richest().getHolder());
+		b.getHistory().forEach(System.out::println);
+	}
+}
@@ -0,0 +1,40 @@
+public class Transaction {
+
+	public enum Kind {
+		DEPOSIT, WITHDRAWAL
+	}
+
+	private static int counter = 0;
+
+	private final int id;
+	private final Kind kind;
+	private final double value;
+	private final String account;
+
+	public Transaction(Kind kind, double value, String account) {
+		this.id = ++counter;
+		this.kind = kind;
+		this.value = value;
+		this.account = account;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public double getSignedValue() {
+		return kind == Kind.DEPOSIT ? value : -value;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("#").append(id).append(' ');
+		sb.append(kind == Kind.DEPOSIT ? "+" : "-").append(value);
+		sb.append(" on ").append(account);
+		return sb.toString();
+	}
+}
@@ -1,15 +1,33 @@
-import comparison.CSVCreation;
+import ast.ASTCache;
+import ast.ReferenceCorpus;
+import ast.Template;
+import comparison.CSVReading;
+import comparison.CSVWriter;
+import comparison.ColumnarWriter;
+import comparison.Checkpoint;
 import comparison.Comparer;
+import comparison.ComparisonSink;
+import comparison.ComparisonTable;
+import comparison.FingerprintIndex;
 import comparison.FolderComparison;
+import comparison.LSHScreening;
 import comparison.TypeComparison;
+import comparison.TypeMatcher;
+import comparison.scoring.ASTDiffCache;
+import comparison.scoring.metrics.MetricScorer;
 import detection.AvgPlagiarismDetection;
+import detection.PlagiarismDetection;
 import detection.PlagiarismDetector;
+import detection.RuleBasedPlagiarismDetection;
 import util.ArgumentParser;
 import util.SubmissionUnpacking;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class Application {
@@ -19,43 +37,249 @@ public class Application {
 		ap.addArgument("--submissionsZip", Path::of, null);
 		ap.addListArgument("--folders", (List<String>) null);
 		ap.addSetArgument("--excludedTypeNames", Set.of());
+		ap.addArgument("--templateFolder", (String) null);
+		ap.addBooleanArgument("--unpackJavaOnly");
+		ap.addBooleanArgument("--inMemory");
 		ap.addArgument("--csvPath", Path::of, null);
-		ap.addArgument("--avgThreshold", Double::parseDouble);
+		ap.addArgument("--columnarPath", Path::of, null);
+		ap.addArgument("--avgThreshold", Double::parseDouble, null);
+		ap.addBooleanArgument("--ruleBasedDetection");
+		ap.addArgument("--rulesFile", Path::of, null);
+		ap.addBooleanArgument("--detectionOnly");
 		ap.addBooleanArgument("--parallel");
+		ap.addArgument("--threads", Integer::parseInt, 0);
+		ap.addArgument("--maxParsedFolders", Integer::parseInt, 0);
+		ap.addArgument("--astCacheDir", Path::of, null);
+		ap.addListArgument("--metrics", (List<String>) null);
+		ap.addArgument("--diffTimeoutMillis", Long::parseLong, 0L);
+		ap.addArgument("--diffMaxElements", Integer::parseInt, 0);
+		// Diffs are computed on flat trees without GumTree (see FlatTreeDiff), which gives the same number of root
+		// operations as GumTree (+-1) for local edits, but fewer for statements replaced by another kind of statement
+		// (e.g., a for-each loop by a for loop), since their descendants are deleted and inserted instead of moved
+		ap.addBooleanArgument("--flatTrees");
+		ap.addArgument("--matcherTopK", Integer::parseInt, 0);
+		ap.addBooleanArgument("--validateMatcherTopK");
+		ap.addBooleanArgument("--optimalAssignment");
+		ap.addBooleanArgument("--deduplicate");
+		ap.addBooleanArgument("--fingerprintIndex");
+		ap.addArgument("--fingerprintK", Integer::parseInt, 20);
+		ap.addArgument("--fingerprintWindow", Integer::parseInt, 10);
+		ap.addArgument("--fingerprintCutoff", Double::parseDouble, 0.1);
+		ap.addArgument("--fingerprintMaxFolderFraction", Double::parseDouble, 0.5);
+		ap.addBooleanArgument("--fingerprintRecallReport");
+		ap.addBooleanArgument("--lshScreening");
+		ap.addArgument("--lshShingleLength", Integer::parseInt, 5);
+		ap.addArgument("--lshBands", Integer::parseInt, 20);
+		ap.addArgument("--lshRows", Integer::parseInt, 5);
+		ap.addArgument("--lshMinSimilarity", Double::parseDouble, 0.5);
+		ap.addArgument("--lshMaxBucketSize", Integer::parseInt, 50);
+		ap.addArgument("--checkpoint", Path::of, null);
+		ap.addArgument("--previousCsv", Path::of, null);
+		ap.addListArgument("--newFolders", (List<String>) null);
+		ap.addArgument("--referenceCorpus", Path::of, null);
+		ap.addBooleanArgument("--buildReferenceCorpus");
 		ap.addMutuallyExclusiveArguments("--submissionsZip", "--folders");
+		ap.addMutuallyExclusiveArguments("--avgThreshold", "--ruleBasedDetection", "--rulesFile");
+		ap.addMutuallyExclusiveArguments("--previousCsv", "--checkpoint");
+		ap.addMutuallyExclusiveArguments("--previousCsv", "--referenceCorpus");
+		// The columnar output can neither be appended to nor restored from (unlike the CSV file)
+		ap.addMutuallyExclusiveArguments("--columnarPath", "--checkpoint");
+		ap.addMutuallyExclusiveArguments("--columnarPath", "--previousCsv");
+		// Skipped metrics are missing in the results, so they must not be exported
+		ap.addMutuallyExclusiveArguments("--detectionOnly", "--csvPath");
+		ap.addMutuallyExclusiveArguments("--detectionOnly", "--columnarPath");
+		ap.addMutuallyExclusiveArguments("--detectionOnly", "--previousCsv");
+		ap.addMutuallyExclusiveArguments("--lshScreening", "--checkpoint");
+		ap.addMutuallyExclusiveArguments("--lshScreening", "--previousCsv");
+		ap.addMutuallyExclusiveArguments("--lshScreening", "--referenceCorpus");
 		ap.parse(args);
 		
+		boolean parallel = ap.get("--parallel");
 		List<String> folders;
+		Map<String, Map<String, String>> inMemoryFolders = null;
 		Path submissionsZip = ap.get("--submissionsZip");
-		if (submissionsZip != null) {
-			folders = SubmissionUnpacking.unpackMoodleSubmissions(submissionsZip);
+		boolean inMemory = ap.get("--inMemory");
+		if (inMemory && submissionsZip == null) {
+			throw new IllegalArgumentException("--inMemory requires --submissionsZip");
+		}
+		if (inMemory) {
+			inMemoryFolders = SubmissionUnpacking.loadMoodleSubmissions(submissionsZip, parallel);
+			folders = new ArrayList<>(inMemoryFolders.keySet());
+		} else if (submissionsZip != null) {
+			folders = SubmissionUnpacking.unpackMoodleSubmissions(submissionsZip, parallel, ap.get("--unpackJavaOnly"));
 		} else {
 			folders = ap.get("--folders");
 		}
 		Set<String> excludedTypeNames = ap.get("--excludedTypeNames");
-		boolean parallel = ap.get("--parallel");
-		Comparer comparer = new Comparer(parallel);
-		List<FolderComparison> comparisons = comparer.compare(folders, excludedTypeNames);
+		ASTDiffCache diffCache = new ASTDiffCache();
+		diffCache.setBudget(ap.get("--diffTimeoutMillis"), ap.get("--diffMaxElements"));
+		TypeMatcher typeMatcher = new TypeMatcher(ap.get("--matcherTopK"), diffCache);
+		typeMatcher.setValidatePruning(ap.get("--validateMatcherTopK"));
+		typeMatcher.setOptimalAssignment(ap.get("--optimalAssignment"));
+		List<String> metrics = ap.get("--metrics");
+		List<MetricScorer> metricScorers = metrics == null ? Comparer.createDefaultMetricScorers(diffCache) : Comparer.createMetricScorers(metrics, diffCache);
+		Comparer comparer = new Comparer(typeMatcher, metricScorers, diffCache, parallel);
+		comparer.setThreads(ap.get("--threads"));
+		comparer.setReleaseModels(ap.get("--flatTrees"));
+		comparer.setInMemoryFolders(inMemoryFolders);
+		comparer.setDeduplicate(ap.get("--deduplicate"));
+		String templateFolder = ap.get("--templateFolder");
+		if (templateFolder != null) {
+			comparer.setTemplate(new Template(templateFolder));
+		}
+		comparer.setMaxParsedFolders(ap.get("--maxParsedFolders"));
+		Path astCacheDir = ap.get("--astCacheDir");
+		if (astCacheDir != null) {
+			comparer.setASTCache(new ASTCache(astCacheDir));
+		}
+		FingerprintIndex fingerprintIndex = null;
+		if (ap.<Boolean>get("--fingerprintIndex")) {
+			fingerprintIndex = new FingerprintIndex(ap.get("--fingerprintK"), ap.get("--fingerprintWindow"),
+					ap.get("--fingerprintCutoff"), ap.get("--fingerprintMaxFolderFraction"));
+			fingerprintIndex.setRecallMode(ap.get("--fingerprintRecallReport"));
+			comparer.setFingerprintIndex(fingerprintIndex);
+		}
+		
+		Path referenceCorpusDir = ap.get("--referenceCorpus");
+		ReferenceCorpus referenceCorpus = null;
+		if (ap.<Boolean>get("--buildReferenceCorpus")) {
+			if (referenceCorpusDir == null) {
+				throw new IllegalArgumentException("--buildReferenceCorpus requires --referenceCorpus");
+			}
+			// Only add the folders to the corpus, they are compared to current folders in later runs
+			comparer.buildReferenceCorpus(referenceCorpusDir, folders, excludedTypeNames);
+			return;
+		} else if (referenceCorpusDir != null) {
+			referenceCorpus = comparer.openReferenceCorpus(referenceCorpusDir, excludedTypeNames);
+		}
 		
+		Double avgThreshold = ap.get("--avgThreshold");
+		Path rulesFile = ap.get("--rulesFile");
+		PlagiarismDetection detection;
+		if (avgThreshold != null) {
+			detection = new AvgPlagiarismDetection(avgThreshold);
+		} else if (rulesFile != null) {
+			detection = RuleBasedPlagiarismDetection.fromRulesFile(rulesFile);
+		} else if (ap.<Boolean>get("--ruleBasedDetection")) {
+			detection = new RuleBasedPlagiarismDetection();
+		} else {
+			throw new IllegalArgumentException("one of --avgThreshold, --ruleBasedDetection or --rulesFile is required");
+		}
+		PlagiarismDetector pd = new PlagiarismDetector(detection);
+		if (ap.<Boolean>get("--detectionOnly")) {
+			comparer.setEarlyExitDetection(pd.getPlagiarismDetection());
+		}
+		ComparisonTable detected = new ComparisonTable(metricScorers, comparer.getStrings());
+		ComparisonSink printSink = Application::printDetected;
+		ComparisonSink detectionSink = pd.createSink(ComparisonSink.of(List.of(printSink, detected)));
 		Path csvPath = ap.get("--csvPath");
+		Path columnarPath = ap.get("--columnarPath");
+		Path checkpointPath = ap.get("--checkpoint");
+		if (checkpointPath != null && csvPath == null) {
+			throw new IllegalArgumentException("--checkpoint requires --csvPath (the CSV file stores the checkpointed results)");
+		}
+		Path previousCsv = ap.get("--previousCsv");
+		List<String> newFolders = ap.get("--newFolders");
+		if ((previousCsv == null) != (newFolders == null)) {
+			throw new IllegalArgumentException("--previousCsv and --newFolders must be specified together");
+		}
+		if (ap.<Boolean>get("--lshScreening")) {
+			LSHScreening screening = new LSHScreening(ap.get("--lshShingleLength"), ap.get("--lshBands"), ap.get("--lshRows"),
+					ap.get("--lshMinSimilarity"), ap.get("--lshMaxBucketSize"));
+			List<ComparisonSink> sinks = new ArrayList<>();
+			if (csvPath != null) {
+				sinks.add(new CSVWriter(csvPath));
+			}
+			if (columnarPath != null) {
+				sinks.add(new ColumnarWriter(columnarPath, metricScorers));
+			}
+			sinks.add(detectionSink);
+			try (ComparisonSink sink = ComparisonSink.of(sinks)) {
+				comparer.screen(folders, excludedTypeNames, screening, sink);
+			}
+		} else if (previousCsv != null) {
+			compareIncrementally(comparer, previousCsv, folders, newFolders, excludedTypeNames, csvPath, detectionSink);
+		} else {
+			compareAll(comparer, folders, referenceCorpus, excludedTypeNames, csvPath, columnarPath, checkpointPath, detectionSink);
+		}
+		if (fingerprintIndex != null && fingerprintIndex.isRecallMode()) {
+			fingerprintIndex.logRecallReport(detected);
+		}
+	}
+	
+	private static void compareAll(Comparer comparer, List<String> folders, ReferenceCorpus referenceCorpus, Set<String> excludedTypeNames,
+			Path csvPath, Path columnarPath, Path checkpointPath, ComparisonSink detectionSink) throws IOException {
+		List<ComparisonSink> sinks = new ArrayList<>();
+		try (Checkpoint checkpoint = checkpointPath == null ? null : new Checkpoint(checkpointPath)) {
+			boolean resumed = checkpoint != null && checkpoint.isResumed();
+			if (resumed) {
+				// Results of the previous run are not computed again, so they must be passed to the detection here
+				checkpoint.restoreCSV(csvPath, comparer.getMetricScorers(), detectionSink);
+			}
+			if (csvPath != null) {
+				sinks.add(new CSVWriter(csvPath, resumed)); // not necessary but useful for external usage
+			}
+			if (columnarPath != null) {
+				sinks.add(new ColumnarWriter(columnarPath, comparer.getMetricScorers()));
+			}
+			sinks.add(detectionSink);
+			comparer.setCheckpoint(checkpoint);
+			try (ComparisonSink sink = ComparisonSink.of(sinks)) {
+				if (referenceCorpus != null) {
+					comparer.compareWithReferenceCorpus(folders, referenceCorpus, excludedTypeNames, sink);
+				} else {
+					comparer.compare(folders, excludedTypeNames, sink);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Compares <code>newFolders</code> to all folders of the previous results <code>previousCsv</code> (and additionally
+	 * to <code>folders</code>, if specified) as well as to each other. The previous results are passed to the detection
+	 * as well, and if <code>csvPath</code> is specified, the merged results are written there (if it is the same file as
+	 * <code>previousCsv</code>, the new results are simply appended).
+	 */
+	private static void compareIncrementally(Comparer comparer, Path previousCsv, List<String> folders, List<String> newFolders,
+			Set<String> excludedTypeNames, Path csvPath, ComparisonSink detectionSink) throws IOException {
+		boolean inPlace = csvPath != null && csvPath.toAbsolutePath().normalize().equals(previousCsv.toAbsolutePath().normalize());
+		List<ComparisonSink> sinks = new ArrayList<>();
 		if (csvPath != null) {
-			CSVCreation.createCSV(comparisons, csvPath); // not necessary but useful for external usage
+			sinks.add(new CSVWriter(csvPath, inPlace));
 		}
-		
-		double avgThreshold = ap.get("--avgThreshold");
-		PlagiarismDetector pd = new PlagiarismDetector(new AvgPlagiarismDetection(avgThreshold));
-		List<FolderComparison> detected = pd.detectPlagiarism(comparisons);
-		for (FolderComparison fc : detected) {
-			System.out.println("DETECTED FOLDERS:");
-			System.out.println("|--- " + fc.getFolder1());
-			System.out.println("|--- " + fc.getFolder2());
-			for (TypeComparison tc : fc.getTypeComparisons()) {
-				System.out.println("|--- DETECTED TYPES");
-				System.out.println("|------- " + tc.getType1());
-				System.out.println("|------- " + tc.getType2());
-			}
-			System.out.println();
+		sinks.add(detectionSink);
+		try (ComparisonSink sink = ComparisonSink.of(sinks)) {
+			// The previous results are not computed again, so they must be passed to the detection (and the merged CSV
+			// file) here. The previous folders are only known from these results, so they are collected on the way
+			Set<String> previousFolders = new LinkedHashSet<>();
+			if (folders != null) {
+				previousFolders.addAll(folders);
+			}
+			ComparisonSink replaySink = inPlace ? detectionSink : sink;
+			CSVReading.readCSV(previousCsv, comparer.getMetricScorers(), fc -> {
+				previousFolders.add(fc.getFolder1());
+				previousFolders.add(fc.getFolder2());
+				replaySink.accept(fc);
+			});
+			for (String folder : newFolders) {
+				if (previousFolders.contains(folder)) {
+					throw new IllegalArgumentException("new folder '" + folder + "' is already part of the previous results");
+				}
+			}
+			comparer.compareIncrementally(new ArrayList<>(previousFolders), newFolders, excludedTypeNames, sink);
+		}
+	}
+	
+	private static void printDetected(FolderComparison fc) {
+		System.out.println("DETECTED FOLDERS:");
+		System.out.println("|--- " + fc.getFolder1());
+		System.out.println("|--- " + fc.getFolder2());
+		for (TypeComparison tc : fc.getTypeComparisons()) {
+			System.out.println("|--- DETECTED TYPES");
+			System.out.println("|------- " + tc.getType1());
+			System.out.println("|------- " + tc.getType2());
 		}
+		System.out.println();
 	}
 	
 }
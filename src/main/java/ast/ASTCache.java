@@ -0,0 +1,202 @@
+package ast;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.visitor.CtScanner;
+import util.Hashing;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent on-disk cache of the parsed original and renamed types of folders (see {@link ASTRenamer#getTypes()}), so
+ * that repeated runs over the same folders can skip building the Spoon models entirely.
+ * <p>
+ * There is one cache entry per folder. Each entry stores a key that is computed from the content of all Java source
+ * files within the folder together with a settings string that must describe everything else the types depend on
+ * (renaming settings, excluded type names, etc.). If the key of an existing entry does not match anymore (e.g., because
+ * a source file changed), the entry is invalidated and replaced with newly parsed types.
+ */
+public class ASTCache {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(ASTCache.class);
+	
+	/**
+	 * Part of every entry key, so that entries written with an incompatible version of the parsing or renaming code are
+	 * invalidated automatically. Must be changed whenever such an incompatible change is made.
+	 */
+	private static final String FORMAT_VERSION = "1";
+	
+	private final Path cacheDir;
+	private final AtomicInteger hits;
+	private final AtomicInteger misses;
+	private final AtomicInteger invalidations;
+	
+	public ASTCache(Path cacheDir) throws IOException {
+		this.cacheDir = cacheDir;
+		Files.createDirectories(cacheDir);
+		hits = new AtomicInteger();
+		misses = new AtomicInteger();
+		invalidations = new AtomicInteger();
+	}
+	
+	/**
+	 * Returns the types of <code>folder</code> from the cache if there is a valid entry, or otherwise, computes the
+	 * types with <code>parser</code> and stores them in the cache.
+	 *
+	 * @param folder   The folder (or single file) whose types should be returned
+	 * @param settings The string that describes all settings that <code>parser</code> uses in addition to the source
+	 *                 files of <code>folder</code>
+	 * @param parser   The function to parse the types of <code>folder</code> in case of a cache miss
+	 * @return The (cached or newly parsed) types of <code>folder</code>
+	 */
+	public List<Type> load(Path folder, String settings, Supplier<List<Type>> parser) {
+		Path entry = cacheDir.resolve(Hashing.sha256(folder.toAbsolutePath().normalize().toString()) + ".ser.gz");
+		String key;
+		try {
+			key = computeKey(folder, settings);
+		} catch (IOException e) {
+			LOGGER.warn("could not compute cache key for folder '{}', bypassing cache: {}", folder, e.getMessage(), e);
+			misses.incrementAndGet();
+			return parser.get();
+		}
+		
+		if (Files.exists(entry)) {
+			try {
+				List<Type> types = read(entry, key);
+				if (types != null) {
+					LOGGER.debug("cache hit for folder '{}'", folder);
+					hits.incrementAndGet();
+					return types;
+				}
+				LOGGER.info("invalidated cache entry for folder '{}' (source files or settings changed)", folder);
+				invalidations.incrementAndGet();
+			} catch (IOException | ClassNotFoundException e) {
+				LOGGER.warn("invalidated unreadable cache entry for folder '{}': {}", folder, e.getMessage(), e);
+				invalidations.incrementAndGet();
+			}
+		} else {
+			LOGGER.debug("cache miss for folder '{}'", folder);
+			misses.incrementAndGet();
+		}
+		
+		List<Type> types = parser.get();
+		try {
+			write(entry, key, types);
+		} catch (IOException e) {
+			LOGGER.warn("could not write cache entry for folder '{}': {}", folder, e.getMessage(), e);
+		}
+		return types;
+	}
+	
+	public int getHits() {
+		return hits.get();
+	}
+	
+	public int getMisses() {
+		return misses.get();
+	}
+	
+	public int getInvalidations() {
+		return invalidations.get();
+	}
+	
+	public void logStatistics() {
+		LOGGER.info("AST cache '{}': {} hits, {} misses, {} invalidations", cacheDir, getHits(), getMisses(), getInvalidations());
+	}
+	
+	private static String computeKey(Path folder, String settings) throws IOException {
+		MessageDigest digest = Hashing.sha256();
+		digest.update((FORMAT_VERSION + "\n" + settings + "\n").getBytes(StandardCharsets.UTF_8));
+		List<Path> sourceFiles;
+		try (Stream<Path> files = Files.walk(folder)) {
+			// Sort to get the same key regardless of the file system's listing order
+			sourceFiles = files.filter(Files::isRegularFile)
+					.filter(file -> file.toString().endsWith(".java"))
+					.sorted()
+					.toList();
+		}
+		for (Path file : sourceFiles) {
+			digest.update((folder.relativize(file) + "\n").getBytes(StandardCharsets.UTF_8));
+			digest.update(Files.readAllBytes(file));
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+	
+	/**
+	 * Reads the types of the cache <code>entry</code>, or returns <code>null</code> if the stored key does not match
+	 * the specified <code>key</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Type> read(Path entry, String key) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(entry))))) {
+			if (!key.equals(ois.readUTF())) {
+				return null;
+			}
+			List<CtType<?>> originals = (List<CtType<?>>) ois.readObject();
+			List<CtType<?>> renamed = (List<CtType<?>>) ois.readObject();
+			// The factory is not serialized together with the elements, so a new one must be set (the same way as
+			// spoon.support.SerializationModelStreamer does it when loading an entire model)
+			Factory factory = createFactory();
+			List<Type> types = new ArrayList<>(originals.size());
+			for (int i = 0; i < originals.size(); i++) {
+				setFactory(originals.get(i), factory);
+				setFactory(renamed.get(i), factory);
+				types.add(new Type(originals.get(i), renamed.get(i)));
+			}
+			return types;
+		}
+	}
+	
+	/**
+	 * Writes the <code>types</code> together with the <code>key</code> to the cache <code>entry</code>.
+	 */
+	static void write(Path entry, String key, List<Type> types) throws IOException {
+		// Write to a temporary file first, so that an interrupted write never leaves a corrupt entry behind
+		Path tmp = Files.createTempFile(entry.toAbsolutePath().getParent(), entry.getFileName().toString(), ".tmp");
+		try {
+			try (ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))) {
+				oos.writeUTF(key);
+				oos.writeObject(new ArrayList<>(types.stream().map(Type::original).toList()));
+				oos.writeObject(new ArrayList<>(types.stream().map(Type::renamed).toList()));
+			}
+			Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	private static Factory createFactory() {
+		Launcher launcher = new Launcher();
+		// Same environment settings as in ASTRenamer (relevant for printing the types)
+		launcher.getEnvironment().setComplianceLevel(17);
+		launcher.getEnvironment().setIgnoreDuplicateDeclarations(true);
+		return launcher.getFactory();
+	}
+	
+	private static void setFactory(CtElement element, Factory factory) {
+		new CtScanner() {
+			@Override
+			protected void enter(CtElement e) {
+				e.setFactory(factory);
+			}
+		}.scan(element);
+	}
+	
+}
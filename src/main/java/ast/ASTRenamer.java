@@ -8,9 +8,11 @@ import spoon.reflect.CtModel;
 import spoon.reflect.code.CtLocalVariable;
 import spoon.reflect.declaration.*;
 import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.compiler.VirtualFile;
 
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class ASTRenamer {
 	
@@ -56,7 +58,53 @@ public class ASTRenamer {
 	}
 	
 	public ASTRenamer(String path, Set<String> excludedTypeNames, boolean keepComments, boolean includeCount, boolean countGlobally) {
-		this(path, excludedTypeNames, keepComments,
+		this(launcher -> launcher.addInputResource(path), excludedTypeNames, null, keepComments, includeCount, countGlobally);
+	}
+	
+	/**
+	 * Creates a new instance that subtracts the template code <code>template</code> from all types before renaming
+	 * them (see {@link Template#subtract(CtType)}).
+	 *
+	 * @param path              The folder (or single file) to parse
+	 * @param excludedTypeNames The simple names of the types to exclude
+	 * @param template          The template code to subtract, or <code>null</code> to not subtract anything
+	 * @param keepComments      Whether to keep comments
+	 * @param includeCount      Whether to include a count in the new names
+	 */
+	public ASTRenamer(String path, Set<String> excludedTypeNames, Template template, boolean keepComments, boolean includeCount) {
+		this(launcher -> launcher.addInputResource(path), excludedTypeNames, template, keepComments, includeCount, false);
+	}
+	
+	/**
+	 * Creates a new instance that parses in-memory source files instead of files on disk, so that submissions can be
+	 * parsed without extracting them first (see {@link util.SubmissionUnpacking#loadMoodleSubmissions(java.nio.file.Path, boolean)}).
+	 *
+	 * @param sources           The source files, mapping the file path to the source code
+	 * @param excludedTypeNames The simple names of the types to exclude
+	 * @param keepComments      Whether to keep comments
+	 * @param includeCount      Whether to include a count in the new names
+	 */
+	public ASTRenamer(Map<String, String> sources, Set<String> excludedTypeNames, boolean keepComments, boolean includeCount) {
+		this(sources, excludedTypeNames, null, keepComments, includeCount);
+	}
+	
+	/**
+	 * Same as {@link #ASTRenamer(Map, Set, boolean, boolean)}, but subtracts the template code <code>template</code>
+	 * from all types before renaming them (see {@link Template#subtract(CtType)}).
+	 *
+	 * @param sources           The source files, mapping the file path to the source code
+	 * @param excludedTypeNames The simple names of the types to exclude
+	 * @param template          The template code to subtract, or <code>null</code> to not subtract anything
+	 * @param keepComments      Whether to keep comments
+	 * @param includeCount      Whether to include a count in the new names
+	 */
+	public ASTRenamer(Map<String, String> sources, Set<String> excludedTypeNames, Template template, boolean keepComments, boolean includeCount) {
+		this(launcher -> sources.forEach((name, code) -> launcher.addInputResource(new VirtualFile(code, name))),
+				excludedTypeNames, template, keepComments, includeCount, false);
+	}
+	
+	private ASTRenamer(Consumer<Launcher> inputs, Set<String> excludedTypeNames, Template template, boolean keepComments, boolean includeCount, boolean countGlobally) {
+		this(inputs, excludedTypeNames, template, keepComments,
 				includeCount, includeCount, includeCount, includeCount, includeCount,
 				countGlobally, countGlobally, countGlobally, countGlobally, countGlobally,
 				"__type__", "__field__", "__method__", "__parameter__", "__localVariable__");
@@ -86,16 +134,32 @@ public class ASTRenamer {
 			boolean countTypesGlobally, boolean countFieldsGlobally, boolean countMethodsGlobally, boolean countParametersGlobally, boolean countLocalVariablesGlobally,
 			String typeTemplate, String fieldTemplate, String methodTemplate, String parameterTemplate, String localVariableTemplate
 	) {
-		Launcher launcher = new Launcher();
 		// path can be a folder or a file
+		this(launcher -> launcher.addInputResource(path), excludedTypeNames, null, keepComments,
+				includeTypeCount, includeFieldCount, includeMethodCount, includeParameterCount, includeLocalVariableCount,
+				countTypesGlobally, countFieldsGlobally, countMethodsGlobally, countParametersGlobally, countLocalVariablesGlobally,
+				typeTemplate, fieldTemplate, methodTemplate, parameterTemplate, localVariableTemplate);
+	}
+	
+	private ASTRenamer(
+			Consumer<Launcher> inputs, Set<String> excludedTypeNames, Template codeTemplate, boolean keepComments,
+			boolean includeTypeCount, boolean includeFieldCount, boolean includeMethodCount, boolean includeParameterCount, boolean includeLocalVariableCount,
+			boolean countTypesGlobally, boolean countFieldsGlobally, boolean countMethodsGlobally, boolean countParametersGlobally, boolean countLocalVariablesGlobally,
+			String typeTemplate, String fieldTemplate, String methodTemplate, String parameterTemplate, String localVariableTemplate
+	) {
+		Launcher launcher = new Launcher();
 		// addInputResource can be called several times
-		launcher.addInputResource(path);
+		inputs.accept(launcher);
 		// the compliance level should be set to the java version targeted by the input resources, e.g. Java 17
 		launcher.getEnvironment().setComplianceLevel(17);
 		launcher.getEnvironment().setCommentEnabled(keepComments);
 		launcher.getEnvironment().setIgnoreDuplicateDeclarations(true);
 		launcher.buildModel();
 		model = launcher.getModel();
+		if (codeTemplate != null) {
+			// Before copying, so that both the original and the renamed types are subtracted
+			model.getAllTypes().forEach(codeTemplate::subtract);
+		}
 		
 		typeData = new RenamingData(includeTypeCount, countTypesGlobally, typeTemplate);
 		fieldData = new RenamingData(includeFieldCount, countFieldsGlobally, fieldTemplate);
@@ -1,6 +1,14 @@
 package ast;
 
+import spoon.reflect.code.CtBinaryOperator;
+import spoon.reflect.code.CtLiteral;
+import spoon.reflect.code.CtUnaryOperator;
 import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtNamedElement;
+import spoon.reflect.reference.CtReference;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class ASTUtil {
 	
@@ -19,4 +27,75 @@ public class ASTUtil {
 		return count;
 	}
 	
+	/**
+	 * Returns the node kinds (see {@link #nodeKind(CtElement)}) of <code>element</code> and all of its children
+	 * (recursively) in pre-order. The length of the returned array is equal to {@link #countElements(CtElement)}.
+	 *
+	 * @param element The root element to start at
+	 * @return The node kinds of <code>element</code> and all of its children in pre-order
+	 */
+	public static int[] nodeKinds(CtElement element) {
+		List<CtElement> elements = new ArrayList<>();
+		collectPreOrder(element, elements);
+		return elements.stream().mapToInt(ASTUtil::nodeKind).toArray();
+	}
+	
+	/**
+	 * Returns the tokens of <code>element</code> and all of its children (recursively) in pre-order (see
+	 * {@link #token(CtElement)}). The length of the returned array is equal to {@link #countElements(CtElement)}.
+	 *
+	 * @param element The root element to start at
+	 * @return The tokens of <code>element</code> and all of its children in pre-order
+	 */
+	public static int[] tokens(CtElement element) {
+		List<CtElement> elements = new ArrayList<>();
+		collectPreOrder(element, elements);
+		return elements.stream().mapToInt(ASTUtil::token).toArray();
+	}
+	
+	private static void collectPreOrder(CtElement element, List<CtElement> elements) {
+		elements.add(element);
+		for (CtElement e : element.getDirectChildren()) {
+			collectPreOrder(e, elements);
+		}
+	}
+	
+	/**
+	 * Returns an integer that identifies the kind of <code>element</code>, i.e., its implementation class (e.g., all
+	 * method invocations have the same node kind). The value is stable across program runs, so it can be persisted.
+	 *
+	 * @param element The element whose kind should be returned
+	 * @return The node kind of <code>element</code>
+	 */
+	public static int nodeKind(CtElement element) {
+		// String.hashCode is specified and thus stable (unlike Class.hashCode)
+		return element.getClass().getSimpleName().hashCode();
+	}
+	
+	/**
+	 * Returns an integer that identifies <code>element</code> as a token: Unlike {@link #nodeKind(CtElement)}, which
+	 * only identifies the kind of <code>element</code>, the token additionally includes the name of named elements and
+	 * references (e.g., the names of methods, variables and types, which are the template names in case of renamed
+	 * types), the value of literals and the kind of operators. Like node kinds, tokens are stable across program runs.
+	 *
+	 * @param element The element whose token should be returned
+	 * @return The token of <code>element</code>
+	 */
+	public static int token(CtElement element) {
+		String detail = null;
+		if (element instanceof CtNamedElement namedElement) {
+			detail = namedElement.getSimpleName();
+		} else if (element instanceof CtReference reference) {
+			detail = reference.getSimpleName();
+		} else if (element instanceof CtLiteral<?> literal) {
+			detail = String.valueOf(literal.getValue());
+		} else if (element instanceof CtBinaryOperator<?> operator) {
+			detail = operator.getKind().name();
+		} else if (element instanceof CtUnaryOperator<?> operator) {
+			detail = operator.getKind().name();
+		}
+		int kind = nodeKind(element);
+		return detail == null ? kind : 31 * kind + detail.hashCode();
+	}
+	
 }
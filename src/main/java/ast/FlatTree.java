@@ -0,0 +1,212 @@
+package ast;
+
+import spoon.reflect.declaration.CtElement;
+import util.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * Compact, immutable representation of the tree of a single type, which only consists of a few <code>int</code>
+ * arrays instead of a graph of Spoon elements. The nodes are numbered in pre-order (the same order as
+ * {@link ASTUtil#nodeKinds(CtElement)}), so the root is node 0, and the subtree of node <code>i</code> consists of the
+ * nodes <code>i</code> (inclusive) to {@link #getSubtreeEnd(int) getSubtreeEnd(i)} (exclusive). For every node, the
+ * following is stored:
+ * <ul>
+ *     <li>The node kind (see {@link ASTUtil#nodeKind(CtElement)})</li>
+ *     <li>The label, which is the token of the node (see {@link ASTUtil#token(CtElement)}), i.e., the node kind
+ *     combined with the name, value or operator of the node (if any)</li>
+ *     <li>The parent node (-1 for the root)</li>
+ *     <li>The end of the subtree, from which the children can be iterated (see {@link #getFirstChild(int)} and
+ *     {@link #getNextSibling(int)})</li>
+ *     <li>The height (1 for leaves) and a hash of the entire subtree, so that identical subtrees can be found quickly
+ *     (see {@link #isIsomorphic(int, FlatTree, int)})</li>
+ * </ul>
+ * The tree is built once per type (see {@link TypeFeatures#getFlatTree()}), so it can be diffed with other trees
+ * (see {@link comparison.scoring.FlatTreeDiff}) without keeping the Spoon model in memory.
+ */
+public class FlatTree {
+	
+	private final int[] kinds;
+	private final int[] labels;
+	private final int[] parents;
+	private final int[] subtreeEnds;
+	private final int[] heights;
+	private final long[] hashes;
+	
+	private FlatTree(int[] kinds, int[] labels, int[] parents, int[] subtreeEnds) {
+		this.kinds = kinds;
+		this.labels = labels;
+		this.parents = parents;
+		this.subtreeEnds = subtreeEnds;
+		heights = new int[kinds.length];
+		hashes = new long[kinds.length];
+		// Children always come after their parent in pre-order, so iterate backwards to see them first
+		for (int i = kinds.length - 1; i >= 0; i--) {
+			int height = 1;
+			long hash = labels[i];
+			for (int child = getFirstChild(i); child >= 0; child = getNextSibling(child)) {
+				height = Math.max(height, heights[child] + 1);
+				hash = Hashing.append(hash, hashes[child]);
+			}
+			heights[i] = height;
+			// Include the size, so that the same children at different levels do not lead to the same hash
+			hashes[i] = hash * 31 + getSubtreeSize(i);
+		}
+	}
+	
+	/**
+	 * Creates the flat tree of <code>root</code> and all of its children (recursively, see
+	 * {@link CtElement#getDirectChildren()}).
+	 *
+	 * @param root The root element of the tree
+	 * @return The flat tree of <code>root</code>
+	 */
+	public static FlatTree of(CtElement root) {
+		Builder builder = new Builder();
+		builder.add(root, -1);
+		return builder.build();
+	}
+	
+	/**
+	 * Collects the arrays of all nodes in pre-order.
+	 */
+	private static class Builder {
+		
+		private int size = 0;
+		private int[] kinds = new int[64];
+		private int[] labels = new int[64];
+		private int[] parents = new int[64];
+		private int[] subtreeEnds = new int[64];
+		
+		void add(CtElement element, int parent) {
+			if (size == kinds.length) {
+				kinds = Arrays.copyOf(kinds, size * 2);
+				labels = Arrays.copyOf(labels, size * 2);
+				parents = Arrays.copyOf(parents, size * 2);
+				subtreeEnds = Arrays.copyOf(subtreeEnds, size * 2);
+			}
+			int index = size++;
+			kinds[index] = ASTUtil.nodeKind(element);
+			labels[index] = ASTUtil.token(element);
+			parents[index] = parent;
+			for (CtElement child : element.getDirectChildren()) {
+				add(child, index);
+			}
+			subtreeEnds[index] = size;
+		}
+		
+		FlatTree build() {
+			return new FlatTree(Arrays.copyOf(kinds, size), Arrays.copyOf(labels, size), Arrays.copyOf(parents, size),
+					Arrays.copyOf(subtreeEnds, size));
+		}
+		
+	}
+	
+	/**
+	 * Returns the number of nodes, which is equal to {@link ASTUtil#countElements(CtElement)} of the root element.
+	 */
+	public int size() {
+		return kinds.length;
+	}
+	
+	/**
+	 * Returns the node kinds of all nodes in pre-order. The returned array must not be modified.
+	 */
+	public int[] getKinds() {
+		return kinds;
+	}
+	
+	/**
+	 * Returns the labels (tokens) of all nodes in pre-order. The returned array must not be modified.
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+	
+	public int getKind(int node) {
+		return kinds[node];
+	}
+	
+	public int getLabel(int node) {
+		return labels[node];
+	}
+	
+	/**
+	 * Returns the parent of <code>node</code>, or -1 if <code>node</code> is the root.
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+	
+	/**
+	 * Returns the (exclusive) end of the subtree of <code>node</code> in pre-order.
+	 */
+	public int getSubtreeEnd(int node) {
+		return subtreeEnds[node];
+	}
+	
+	public int getSubtreeSize(int node) {
+		return subtreeEnds[node] - node;
+	}
+	
+	/**
+	 * Returns whether <code>node</code> is part of the subtree of <code>root</code> (including <code>root</code>
+	 * itself).
+	 */
+	public boolean isInSubtree(int node, int root) {
+		return node >= root && node < subtreeEnds[root];
+	}
+	
+	/**
+	 * Returns the first child of <code>node</code>, or -1 if <code>node</code> is a leaf.
+	 */
+	public int getFirstChild(int node) {
+		return subtreeEnds[node] > node + 1 ? node + 1 : -1;
+	}
+	
+	/**
+	 * Returns the next sibling of <code>node</code>, or -1 if <code>node</code> is the last child of its parent (or
+	 * the root).
+	 */
+	public int getNextSibling(int node) {
+		int parent = parents[node];
+		if (parent < 0) {
+			return -1;
+		}
+		int next = subtreeEnds[node];
+		return next < subtreeEnds[parent] ? next : -1;
+	}
+	
+	public int getHeight(int node) {
+		return heights[node];
+	}
+	
+	public long getHash(int node) {
+		return hashes[node];
+	}
+	
+	/**
+	 * Returns whether the subtree of <code>node</code> is identical to the subtree of <code>otherNode</code> in
+	 * <code>other</code>, i.e., whether both subtrees have the same structure and labels.
+	 *
+	 * @param node      The root of the subtree in this tree
+	 * @param other     The other tree
+	 * @param otherNode The root of the subtree in <code>other</code>
+	 * @return Whether both subtrees are identical
+	 */
+	public boolean isIsomorphic(int node, FlatTree other, int otherNode) {
+		if (hashes[node] != other.hashes[otherNode] || getSubtreeSize(node) != other.getSubtreeSize(otherNode)) {
+			return false;
+		}
+		// Same hash does not guarantee the same subtree, so compare the nodes (in pre-order, the labels and subtree
+		// sizes uniquely determine the subtree)
+		for (int i = 0; i < getSubtreeSize(node); i++) {
+			if (labels[node + i] != other.labels[otherNode + i] || kinds[node + i] != other.kinds[otherNode + i]
+					|| getSubtreeSize(node + i) != other.getSubtreeSize(otherNode + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+}
@@ -0,0 +1,80 @@
+package ast;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of node kinds (see {@link ASTUtil#nodeKind(spoon.reflect.declaration.CtElement)}), i.e., how often each
+ * node kind occurs in a type. This is a cheap structural summary of a type that ignores the order of its elements.
+ */
+public class NodeKindHistogram {
+	
+	/**
+	 * Sorted, distinct node kinds.
+	 */
+	private final int[] kinds;
+	/**
+	 * The number of occurrences of the node kind at the same index in {@link #kinds}.
+	 */
+	private final int[] counts;
+	
+	/**
+	 * Creates a new histogram of the specified <code>nodeKinds</code>.
+	 *
+	 * @param nodeKinds The node kinds to count (in any order)
+	 */
+	public NodeKindHistogram(int[] nodeKinds) {
+		int[] sorted = nodeKinds.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				distinct++;
+			}
+		}
+		kinds = new int[distinct];
+		counts = new int[distinct];
+		int j = -1;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				j++;
+				kinds[j] = sorted[i];
+			}
+			counts[j]++;
+		}
+	}
+	
+	/**
+	 * Returns the L1 distance between this and the <code>other</code> histogram, i.e., the sum of the absolute count
+	 * differences over all node kinds. A distance of 0 means that both histograms are the same.
+	 *
+	 * @param other The histogram to compare to
+	 * @return The L1 distance between this and the <code>other</code> histogram
+	 */
+	public int distance(NodeKindHistogram other) {
+		// Both kind arrays are sorted, so simply merge them
+		int distance = 0;
+		int i = 0;
+		int j = 0;
+		while (i < kinds.length && j < other.kinds.length) {
+			if (kinds[i] == other.kinds[j]) {
+				distance += Math.abs(counts[i] - other.counts[j]);
+				i++;
+				j++;
+			} else if (kinds[i] < other.kinds[j]) {
+				distance += counts[i];
+				i++;
+			} else {
+				distance += other.counts[j];
+				j++;
+			}
+		}
+		for (; i < kinds.length; i++) {
+			distance += counts[i];
+		}
+		for (; j < other.kinds.length; j++) {
+			distance += other.counts[j];
+		}
+		return distance;
+	}
+	
+}
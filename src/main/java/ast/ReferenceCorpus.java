@@ -0,0 +1,140 @@
+package ast;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Hashing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persistent corpus of the parsed original and renamed types of reference folders (e.g., submissions of previous
+ * semesters or known online solutions), so that current folders can be compared against them without parsing the
+ * reference folders again and without comparing the reference folders among themselves.
+ * <p>
+ * The corpus is a directory that contains a manifest file and one entry per reference folder (in the same format as
+ * the entries of {@link ASTCache}). The manifest stores the settings string that describes how the types were parsed
+ * (renaming settings, excluded type names, etc.), followed by the list of all reference folders. All folders of a
+ * corpus must be parsed with the same settings, which must also be the settings of the folders they are compared to.
+ * Unlike {@link ASTCache}, the entries are never invalidated, since the reference folders are not expected to exist
+ * anymore (or to change) after they were added.
+ */
+public class ReferenceCorpus {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceCorpus.class);
+	
+	private static final String MANIFEST = "manifest.txt";
+	
+	private final Path corpusDir;
+	private final String settings;
+	private final Set<String> folders;
+	
+	private ReferenceCorpus(Path corpusDir, String settings, Set<String> folders) {
+		this.corpusDir = corpusDir;
+		this.settings = settings;
+		this.folders = folders;
+	}
+	
+	/**
+	 * Opens the corpus in the directory <code>corpusDir</code>. If the directory does not contain a corpus yet, a new
+	 * and empty corpus is created there.
+	 *
+	 * @param corpusDir The directory of the corpus
+	 * @param settings  The string that describes all settings the types of the corpus were (or will be) parsed with
+	 * @return The opened corpus
+	 * @throws IOException              In case reading or creating the corpus fails
+	 * @throws IllegalArgumentException If the existing corpus was created with different <code>settings</code>
+	 */
+	public static ReferenceCorpus open(Path corpusDir, String settings) throws IOException {
+		Path manifest = corpusDir.resolve(MANIFEST);
+		if (!Files.exists(manifest)) {
+			Files.createDirectories(corpusDir);
+			Files.writeString(manifest, settings + "\n", StandardCharsets.UTF_8);
+			return new ReferenceCorpus(corpusDir, settings, new LinkedHashSet<>());
+		}
+		List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+		if (lines.isEmpty() || !lines.get(0).equals(settings)) {
+			throw new IllegalArgumentException("reference corpus '" + corpusDir + "' was created with different settings ('" +
+					(lines.isEmpty() ? "" : lines.get(0)) + "' instead of '" + settings + "')");
+		}
+		Set<String> folders = new LinkedHashSet<>(lines.subList(1, lines.size()));
+		LOGGER.info("opened reference corpus '{}' with {} folders", corpusDir, folders.size());
+		return new ReferenceCorpus(corpusDir, settings, folders);
+	}
+	
+	public Path getCorpusDir() {
+		return corpusDir;
+	}
+	
+	public String getSettings() {
+		return settings;
+	}
+	
+	/**
+	 * Returns all reference folders of this corpus in the order they were added.
+	 */
+	public synchronized List<String> getFolders() {
+		return new ArrayList<>(folders);
+	}
+	
+	public synchronized boolean contains(String folder) {
+		return folders.contains(folder);
+	}
+	
+	/**
+	 * Adds the <code>types</code> of the reference <code>folder</code> to this corpus. If the folder is already
+	 * contained, its types are replaced.
+	 *
+	 * @param folder The reference folder
+	 * @param types  The types of <code>folder</code>, parsed with the settings of this corpus
+	 * @throws IOException In case writing to the corpus fails
+	 */
+	public void add(String folder, List<Type> types) throws IOException {
+		ASTCache.write(entry(folder), settings, types);
+		synchronized (this) {
+			// Only list the folder once its entry is complete, so an interrupted add never leaves a broken corpus behind
+			if (folders.add(folder)) {
+				try (BufferedWriter bw = Files.newBufferedWriter(corpusDir.resolve(MANIFEST), StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+					bw.write(folder);
+					bw.newLine();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Loads the types of the reference <code>folder</code> from this corpus.
+	 *
+	 * @param folder The reference folder, which must be contained in this corpus
+	 * @return The types of <code>folder</code>
+	 */
+	public List<Type> load(String folder) {
+		if (!contains(folder)) {
+			throw new IllegalArgumentException("folder '" + folder + "' is not part of reference corpus '" + corpusDir + "'");
+		}
+		try {
+			List<Type> types = ASTCache.read(entry(folder), settings);
+			if (types == null) {
+				throw new IOException("settings of the entry do not match the settings of the corpus");
+			}
+			return types;
+		} catch (IOException | ClassNotFoundException e) {
+			throw new UncheckedIOException(new IOException("could not load folder '" + folder + "' from reference corpus '" +
+					corpusDir + "': " + e.getMessage(), e));
+		}
+	}
+	
+	private Path entry(String folder) {
+		return corpusDir.resolve(Hashing.sha256(folder) + ".ser.gz");
+	}
+	
+}
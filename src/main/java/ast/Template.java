@@ -0,0 +1,145 @@
+package ast;
+
+import spoon.Launcher;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtStatement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.CtTypeMember;
+import util.Hashing;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Template (skeleton) code that is provided with an assignment, which is subtracted from the types of all submissions
+ * before they are renamed and compared (see {@link ASTRenamer}). This way, the code that all submissions share
+ * because of the template does not contribute to their similarity, and the compared ASTs are smaller.
+ * <p>
+ * A type of a submission is matched to the template type with the same simple name (just like excluded types are
+ * matched, see {@link ASTRenamer#ASTRenamer(String, Set, boolean, boolean)}). From a matched type, all members
+ * (fields, methods, constructors and nested types) that are identical to a member of the template type are removed.
+ * For the remaining methods and constructors that have the same signature as one of the template type, all
+ * statements of their bodies that are identical to a statement of the template body are removed (each template
+ * statement at most once). Nested types are subtracted recursively. Elements are identical if their printed source
+ * code is equal.
+ */
+public class Template {
+	
+	/**
+	 * The printed elements of a template type, which are computed once, so that the template can be subtracted from
+	 * many types (also concurrently) without printing it again.
+	 *
+	 * @param members     The printed members
+	 * @param executables The printed body statements (with their number of occurrences) of each method and
+	 *                    constructor with a body, by signature
+	 * @param nestedTypes The nested types by simple name
+	 */
+	private record TemplateType(Set<String> members, Map<String, Map<String, Integer>> executables,
+			Map<String, TemplateType> nestedTypes) {
+			
+		static TemplateType of(CtType<?> type) {
+			Set<String> members = new HashSet<>();
+			Map<String, Map<String, Integer>> executables = new HashMap<>();
+			Map<String, TemplateType> nestedTypes = new HashMap<>();
+			for (CtTypeMember member : type.getTypeMembers()) {
+				members.add(member.toString());
+				if (member instanceof CtExecutable<?> executable && executable.getBody() != null) {
+					Map<String, Integer> statements = new HashMap<>();
+					for (CtStatement statement : executable.getBody().getStatements()) {
+						statements.merge(statement.toString(), 1, Integer::sum);
+					}
+					executables.put(executable.getSignature(), statements);
+				} else if (member instanceof CtType<?> nestedType) {
+					nestedTypes.put(nestedType.getSimpleName(), of(nestedType));
+				}
+			}
+			return new TemplateType(members, executables, nestedTypes);
+		}
+		
+	}
+	
+	private final String path;
+	private final Map<String, TemplateType> types;
+	private final String fingerprint;
+	
+	/**
+	 * Parses the template in <code>path</code>.
+	 *
+	 * @param path The folder (or single file) of the template
+	 */
+	public Template(String path) {
+		this.path = path;
+		Launcher launcher = new Launcher();
+		launcher.addInputResource(path);
+		// Same environment settings as in ASTRenamer, so that the printed elements are comparable
+		launcher.getEnvironment().setComplianceLevel(17);
+		launcher.getEnvironment().setCommentEnabled(false);
+		launcher.getEnvironment().setIgnoreDuplicateDeclarations(true);
+		launcher.buildModel();
+		types = new HashMap<>();
+		List<String> printedTypes = new ArrayList<>();
+		for (CtType<?> ctType : launcher.getModel().getAllTypes()) {
+			types.put(ctType.getSimpleName(), TemplateType.of(ctType));
+			printedTypes.add(ctType.toString());
+		}
+		// Sorted, so that the fingerprint does not depend on the parsing order
+		fingerprint = Hashing.sha256(printedTypes.stream().sorted().collect(Collectors.joining("\n")));
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * Returns a hash of the parsed template types, which changes whenever the template code changes.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+	
+	/**
+	 * Removes all elements of <code>type</code> that are identical to the template type with the same simple name. If
+	 * there is no such template type, <code>type</code> is not changed.
+	 *
+	 * @param type The type to subtract the template from, which is modified in place
+	 */
+	public void subtract(CtType<?> type) {
+		TemplateType templateType = types.get(type.getSimpleName());
+		if (templateType != null) {
+			subtract(type, templateType);
+		}
+	}
+	
+	private static void subtract(CtType<?> type, TemplateType templateType) {
+		// Copy, since members are removed while iterating
+		for (CtTypeMember member : new ArrayList<>(type.getTypeMembers())) {
+			if (templateType.members().contains(member.toString())) {
+				type.removeTypeMember(member);
+			} else if (member instanceof CtExecutable<?> executable && executable.getBody() != null) {
+				Map<String, Integer> templateStatements = templateType.executables().get(executable.getSignature());
+				if (templateStatements != null) {
+					subtract(executable.getBody(), templateStatements);
+				}
+			} else if (member instanceof CtType<?> nestedType) {
+				TemplateType templateNestedType = templateType.nestedTypes().get(nestedType.getSimpleName());
+				if (templateNestedType != null) {
+					subtract(nestedType, templateNestedType);
+				}
+			}
+		}
+	}
+	
+	private static void subtract(CtBlock<?> block, Map<String, Integer> templateStatements) {
+		// Each template statement only removes a single identical statement
+		Map<String, Integer> remaining = new HashMap<>(templateStatements);
+		for (CtStatement statement : new ArrayList<>(block.getStatements())) {
+			String printed = statement.toString();
+			if (remaining.getOrDefault(printed, 0) > 0) {
+				remaining.merge(printed, -1, Integer::sum);
+				block.removeStatement(statement);
+			}
+		}
+	}
+	
+}
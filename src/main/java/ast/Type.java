@@ -2,10 +2,109 @@ package ast;
 
 import spoon.reflect.declaration.CtType;
 
-public record Type(CtType<?> original, CtType<?> renamed) {
+import java.nio.file.Path;
+
+/**
+ * Represents a single type of a folder as pair of the original type and its renamed counterpart (see
+ * {@link ASTRenamer}). For both of them, the derived {@link TypeFeatures} are available via
+ * {@link #getFeatures(boolean)}, which are only computed once, so they can be reused across all comparisons this type
+ * is part of. Once the type is parsed, its Spoon model can be released (see {@link #releaseModel()}), so that only the
+ * features are kept in memory.
+ * <p>
+ * Two types are only equal if they are the same object.
+ */
+public class Type {
+	
+	private volatile CtType<?> original;
+	private volatile CtType<?> renamed;
+	private final String originalName;
+	private volatile Path file;
+	private final TypeFeatures originalFeatures;
+	private final TypeFeatures renamedFeatures;
+	
+	public Type(CtType<?> original, CtType<?> renamed) {
+		this.original = original;
+		this.renamed = renamed;
+		originalName = original.getSimpleName();
+		file = null;
+		originalFeatures = new TypeFeatures(original);
+		renamedFeatures = new TypeFeatures(renamed);
+	}
+	
+	/**
+	 * Returns the Spoon model of the original type.
+	 *
+	 * @return The original type
+	 * @throws IllegalStateException If the model was released (see {@link #releaseModel()})
+	 */
+	public CtType<?> original() {
+		return checkReleased(original);
+	}
+	
+	/**
+	 * Returns the Spoon model of the renamed type.
+	 *
+	 * @return The renamed type
+	 * @throws IllegalStateException If the model was released (see {@link #releaseModel()})
+	 */
+	public CtType<?> renamed() {
+		return checkReleased(renamed);
+	}
+	
+	private CtType<?> checkReleased(CtType<?> type) {
+		if (type == null) {
+			throw new IllegalStateException("the model of type '" + originalName + "' was released");
+		}
+		return type;
+	}
+	
+	/**
+	 * Returns the file that contains the original type.
+	 *
+	 * @return The file of the original type
+	 */
+	public Path getFile() {
+		Path f = file;
+		if (f == null) {
+			f = original().getPosition().getCompilationUnit().getFile().toPath();
+			file = f;
+		}
+		return f;
+	}
+	
+	/**
+	 * Releases the Spoon models of the original and the renamed type after computing all features that require them
+	 * (see {@link TypeFeatures#releaseModel()}), which reduces the memory of a parsed type to its features. Afterward,
+	 * {@link #original()} and {@link #renamed()} throw an {@link IllegalStateException}, so this must only be called
+	 * if the type is compared with scorers that only use the features (e.g., with diffs of flat trees, see
+	 * {@link comparison.scoring.ASTDiffCache#setFlatDiff(boolean)}).
+	 */
+	public void releaseModel() {
+		getFile();
+		originalFeatures.releaseModel();
+		renamedFeatures.releaseModel();
+		original = null;
+		renamed = null;
+	}
+	
+	/**
+	 * Returns the features of either the renamed type ({@link #renamed()}) or the original type ({@link #original()}).
+	 *
+	 * @param useRenamed Whether to return the features of the renamed type
+	 * @return The features of the renamed type if <code>useRenamed</code> is <code>true</code>, otherwise the features
+	 * of the original type
+	 */
+	public TypeFeatures getFeatures(boolean useRenamed) {
+		return useRenamed ? renamedFeatures : originalFeatures;
+	}
 	
 	public String getOriginalName() {
-		return original.getSimpleName();
+		return originalName;
+	}
+	
+	@Override
+	public String toString() {
+		return getOriginalName();
 	}
 	
 }
@@ -0,0 +1,164 @@
+package ast;
+
+import spoon.reflect.declaration.CtType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Features derived from a single {@link CtType} that are needed for comparing it with other types. All features are
+ * computed lazily on first access and then memoized, since each type is typically compared to many other types.
+ * <p>
+ * Once all features are computed, the Spoon model of the type can be released (see {@link #releaseModel()}), so that
+ * only the features themselves are kept in memory.
+ * <p>
+ * This class is thread-safe. In the rare case that multiple threads access a feature for the first time concurrently,
+ * it might be computed more than once, but all threads will see an equal result.
+ */
+public class TypeFeatures {
+	
+	private volatile CtType<?> type;
+	private final String qualifiedName;
+	private volatile String source;
+	private volatile FlatTree flatTree;
+	private volatile NodeKindHistogram nodeKindHistogram;
+	private final Map<Object, Object> derivedFeatures;
+	
+	public TypeFeatures(CtType<?> type) {
+		this.type = type;
+		qualifiedName = type.getQualifiedName();
+		source = null;
+		flatTree = null;
+		nodeKindHistogram = null;
+		derivedFeatures = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Returns the Spoon model of the type.
+	 *
+	 * @return The type
+	 * @throws IllegalStateException If the model was released (see {@link #releaseModel()})
+	 */
+	public CtType<?> getType() {
+		CtType<?> t = type;
+		if (t == null) {
+			throw new IllegalStateException("the model of type '" + qualifiedName + "' was released");
+		}
+		return t;
+	}
+	
+	public String getQualifiedName() {
+		return qualifiedName;
+	}
+	
+	/**
+	 * Computes all features that require the Spoon model of the type (the source code and the flat tree, from which
+	 * all other features are derived) and then drops the reference to the model, so that it can be garbage collected
+	 * if it is not referenced anywhere else. Afterward, {@link #getType()} throws an {@link IllegalStateException},
+	 * whereas all features are still available.
+	 */
+	public void releaseModel() {
+		getSource();
+		getFlatTree();
+		type = null;
+	}
+	
+	/**
+	 * Returns the printed source code of the type (see {@link CtType#toString()}).
+	 *
+	 * @return The printed source code of the type
+	 */
+	public String getSource() {
+		String s = source;
+		if (s == null) {
+			s = getType().toString();
+			source = s;
+		}
+		return s;
+	}
+	
+	/**
+	 * Returns the flat tree of the type (see {@link FlatTree}), which is the basis of the node kinds, the tokens and the
+	 * element count of the type.
+	 *
+	 * @return The flat tree of the type
+	 */
+	public FlatTree getFlatTree() {
+		FlatTree ft = flatTree;
+		if (ft == null) {
+			ft = FlatTree.of(getType());
+			flatTree = ft;
+		}
+		return ft;
+	}
+	
+	/**
+	 * Returns the same value as {@link ASTUtil#countElements(spoon.reflect.declaration.CtElement)}.
+	 *
+	 * @return The number of elements of the type and all of its children
+	 */
+	public int getElementCount() {
+		return getFlatTree().size();
+	}
+	
+	/**
+	 * Returns the token sequence of the type, which consists of the node kinds of the type and all its children in
+	 * pre-order (see {@link ASTUtil#nodeKinds(spoon.reflect.declaration.CtElement)}). The returned array must not be
+	 * modified.
+	 *
+	 * @return The node kinds of the type and all its children in pre-order
+	 */
+	public int[] getNodeKinds() {
+		return getFlatTree().getKinds();
+	}
+	
+	/**
+	 * Returns the histogram of the node kinds of the type (see {@link #getNodeKinds()}).
+	 *
+	 * @return The histogram of the node kinds of the type
+	 */
+	public NodeKindHistogram getNodeKindHistogram() {
+		NodeKindHistogram h = nodeKindHistogram;
+		if (h == null) {
+			h = new NodeKindHistogram(getNodeKinds());
+			nodeKindHistogram = h;
+		}
+		return h;
+	}
+	
+	/**
+	 * Returns the token sequence of the type, which consists of the tokens of the type and all its children in
+	 * pre-order (see {@link ASTUtil#tokens(spoon.reflect.declaration.CtElement)}). The returned array must not be
+	 * modified.
+	 *
+	 * @return The tokens of the type and all its children in pre-order
+	 */
+	public int[] getTokens() {
+		return getFlatTree().getLabels();
+	}
+	
+	/**
+	 * Returns a feature that is derived from the other features of this type, e.g., a sketch whose computation
+	 * depends on the settings of a scorer. The feature is computed with <code>computation</code> on first access and
+	 * then memoized under <code>key</code>, which must thus uniquely identify both the feature and its settings (e.g.,
+	 * a record of all settings).
+	 *
+	 * @param key         The key that identifies the feature
+	 * @param computation The function that computes the feature of this type
+	 * @param <T>         The type of the feature
+	 * @return The (memoized) feature
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getDerivedFeature(Object key, Function<TypeFeatures, T> computation) {
+		Object feature = derivedFeatures.get(key);
+		if (feature == null) {
+			// Do not use computeIfAbsent, since this would block other threads during the computation (same as above,
+			// the feature might be computed more than once)
+			feature = computation.apply(this);
+			derivedFeatures.put(key, feature);
+		}
+		return (T) feature;
+	}
+	
+}
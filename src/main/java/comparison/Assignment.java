@@ -0,0 +1,102 @@
+package comparison;
+
+import java.util.Arrays;
+
+/**
+ * Solves the (rectangular) assignment problem with the Hungarian algorithm (Kuhn-Munkres, in the variant with
+ * potentials that takes <code>O(n^2 * m)</code> time for <code>n &lt;= m</code>).
+ */
+class Assignment {
+	
+	private Assignment() {
+	}
+	
+	/**
+	 * Assigns each row of <code>costs</code> to a distinct column, such that the sum of the costs of all assigned
+	 * cells is minimal. If there are more rows than columns, only as many rows as there are columns are assigned.
+	 *
+	 * @param costs The cost matrix with at least one row, where all rows must have the same length
+	 * @return The assigned column of each row, or -1 if a row is not assigned
+	 */
+	static int[] solve(double[][] costs) {
+		int rows = costs.length;
+		int columns = costs[0].length;
+		if (rows <= columns) {
+			return solveWide(costs);
+		}
+		// The algorithm requires at most as many rows as columns, so solve the transposed problem instead
+		double[][] transposed = new double[columns][rows];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				transposed[j][i] = costs[i][j];
+			}
+		}
+		int[] transposedAssignment = solveWide(transposed);
+		int[] assignment = new int[rows];
+		Arrays.fill(assignment, -1);
+		for (int j = 0; j < columns; j++) {
+			assignment[transposedAssignment[j]] = j;
+		}
+		return assignment;
+	}
+	
+	private static int[] solveWide(double[][] costs) {
+		int n = costs.length;
+		int m = costs[0].length;
+		// 1-based indices, where column 0 is a virtual column that is used to add the next row
+		double[] u = new double[n + 1]; // Potentials of the rows
+		double[] v = new double[m + 1]; // Potentials of the columns
+		int[] assignedRow = new int[m + 1]; // Row that is assigned to each column (0 if none)
+		int[] way = new int[m + 1]; // Previous column on the augmenting path
+		for (int i = 1; i <= n; i++) {
+			assignedRow[0] = i;
+			int column = 0;
+			double[] minReduced = new double[m + 1];
+			Arrays.fill(minReduced, Double.POSITIVE_INFINITY);
+			boolean[] used = new boolean[m + 1];
+			// Grow the alternating tree until a free column is reached
+			do {
+				used[column] = true;
+				int row = assignedRow[column];
+				double delta = Double.POSITIVE_INFINITY;
+				int nextColumn = 0;
+				for (int j = 1; j <= m; j++) {
+					if (!used[j]) {
+						double reduced = costs[row - 1][j - 1] - u[row] - v[j];
+						if (reduced < minReduced[j]) {
+							minReduced[j] = reduced;
+							way[j] = column;
+						}
+						if (minReduced[j] < delta) {
+							delta = minReduced[j];
+							nextColumn = j;
+						}
+					}
+				}
+				for (int j = 0; j <= m; j++) {
+					if (used[j]) {
+						u[assignedRow[j]] += delta;
+						v[j] -= delta;
+					} else {
+						minReduced[j] -= delta;
+					}
+				}
+				column = nextColumn;
+			} while (assignedRow[column] != 0);
+			// Augment along the path back to the virtual column
+			do {
+				int previousColumn = way[column];
+				assignedRow[column] = assignedRow[previousColumn];
+				column = previousColumn;
+			} while (column != 0);
+		}
+		int[] assignment = new int[n];
+		for (int j = 1; j <= m; j++) {
+			if (assignedRow[j] != 0) {
+				assignment[assignedRow[j] - 1] = j - 1;
+			}
+		}
+		return assignment;
+	}
+	
+}
@@ -1,8 +1,7 @@
 package comparison;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -12,17 +11,27 @@ public class CSVCreation {
 	}
 	
 	public static void createCSV(List<FolderComparison> folderComparisons, Path path) throws IOException {
-		try (BufferedWriter bw = Files.newBufferedWriter(path)) {
-			boolean first = true;
-			for (FolderComparison fc : folderComparisons) {
-				if (first) {
-					bw.write(fc.getCSVHeader());
-					bw.newLine();
-					first = false;
-				}
-				bw.write(fc.getCSVString());
-				bw.newLine();
-			}
+		try (CSVWriter csvWriter = new CSVWriter(path)) {
+			folderComparisons.forEach(csvWriter::accept);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Writes all rows of <code>table</code> to the CSV file <code>path</code>, in the same format as
+	 * {@link #createCSV(List, Path)}, but directly from the columns of the table (see
+	 * {@link CSVWriter#accept(ComparisonTable)}).
+	 *
+	 * @param table The table to write
+	 * @param path  The path to the CSV file
+	 * @throws IOException In case writing fails
+	 */
+	public static void createCSV(ComparisonTable table, Path path) throws IOException {
+		try (CSVWriter csvWriter = new CSVWriter(path)) {
+			csvWriter.accept(table);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
 	}
 	
@@ -0,0 +1,135 @@
+package comparison;
+
+import comparison.scoring.metrics.MetricScorer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Reads CSV files that were created with {@link CSVCreation} or {@link CSVWriter} back into {@link FolderComparison}s.
+ */
+public class CSVReading {
+	
+	private static final List<String> FIXED_COLUMNS = List.of("folder1", "folder2", "file1", "file2", "type1", "type2");
+	
+	private CSVReading() {
+	}
+	
+	/**
+	 * Reads the CSV file <code>path</code> and passes every {@link FolderComparison} to <code>sink</code>. All
+	 * consecutive rows with the same two folders form a single {@link FolderComparison}, which is how they are written.
+	 * The metric columns are mapped to the {@link MetricScorer}s of <code>metricScorers</code> with the same name (see
+	 * {@link MetricScorer#getName()}), in the order of <code>metricScorers</code>.
+	 *
+	 * @param path          The path to the CSV file
+	 * @param metricScorers The {@link MetricScorer}s that were used to create the CSV file
+	 * @param sink          The sink that receives all read {@link FolderComparison}s
+	 * @throws IOException In case reading fails or the CSV file does not have the expected columns
+	 */
+	public static void readCSV(Path path, List<MetricScorer> metricScorers, ComparisonSink sink) throws IOException {
+		try (BufferedReader br = Files.newBufferedReader(path)) {
+			List<String> header = readRecord(br);
+			if (header == null) {
+				return; // Empty file (no comparisons)
+			}
+			int[] metricColumns = getMetricColumns(header, metricScorers, path);
+			// Optional, since files written before approximated diffs were flagged do not have this column
+			int approximateColumn = header.indexOf("approximate");
+			
+			FolderComparison current = null;
+			List<String> record;
+			while ((record = readRecord(br)) != null) {
+				if (record.size() != header.size()) {
+					throw new IOException("invalid CSV record in " + path + " (expected " + header.size() +
+							" columns but got " + record.size() + "): " + record);
+				}
+				String folder1 = record.get(0);
+				String folder2 = record.get(1);
+				if (current == null || !current.getFolder1().equals(folder1) || !current.getFolder2().equals(folder2)) {
+					if (current != null) {
+						sink.accept(current);
+					}
+					current = new FolderComparison(folder1, folder2);
+				}
+				double[] scores = new double[metricScorers.size()];
+				for (int i = 0; i < metricScorers.size(); i++) {
+					scores[i] = Double.parseDouble(record.get(metricColumns[i]));
+				}
+				boolean approximate = approximateColumn >= 0 && Boolean.parseBoolean(record.get(approximateColumn));
+				current.addTypeComparison(new TypeComparison(Path.of(record.get(2)), Path.of(record.get(3)),
+						record.get(4), record.get(5), metricScorers, scores, approximate));
+			}
+			if (current != null) {
+				sink.accept(current);
+			}
+		}
+	}
+	
+	private static int[] getMetricColumns(List<String> header, List<MetricScorer> metricScorers, Path path) throws IOException {
+		if (!header.subList(0, Math.min(header.size(), FIXED_COLUMNS.size())).equals(FIXED_COLUMNS)) {
+			throw new IOException("invalid CSV header in " + path + " (expected it to start with " + FIXED_COLUMNS + "): " + header);
+		}
+		int[] metricColumns = new int[metricScorers.size()];
+		for (int i = 0; i < metricScorers.size(); i++) {
+			metricColumns[i] = header.indexOf(metricScorers.get(i).getName());
+			if (metricColumns[i] < FIXED_COLUMNS.size()) {
+				throw new IOException("missing metric column in " + path + ": " + metricScorers.get(i).getName());
+			}
+		}
+		return metricColumns;
+	}
+	
+	/**
+	 * Reads a single CSV record, where fields might be quoted (and then contain commas, line breaks and quotes, which
+	 * are escaped by doubling them), which is the format of {@link org.apache.commons.text.StringEscapeUtils#escapeCsv}.
+	 * Returns <code>null</code> if the end of the input was reached.
+	 */
+	static List<String> readRecord(Reader reader) throws IOException {
+		int c = reader.read();
+		if (c == -1) {
+			return null;
+		}
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		while (c != -1) {
+			if (quoted) {
+				if (c == '"') {
+					reader.mark(1);
+					int next = reader.read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						reader.reset();
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\n' || c == '\r') {
+				if (c == '\r') {
+					reader.mark(1);
+					if (reader.read() != '\n') {
+						reader.reset();
+					}
+				}
+				break;
+			} else {
+				field.append((char) c);
+			}
+			c = reader.read();
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+	
+}
@@ -0,0 +1,119 @@
+package comparison;
+
+import comparison.scoring.metrics.MetricScorer;
+import org.apache.commons.text.StringEscapeUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sink that writes all received {@link FolderComparison}s to a CSV file (same format as
+ * {@link CSVCreation#createCSV(java.util.List, Path)}). The file is flushed after every folder comparison, so all
+ * comparisons received so far are on disk even if the program is terminated abruptly.
+ */
+public class CSVWriter implements ComparisonSink {
+	
+	private final BufferedWriter bw;
+	private boolean first;
+	
+	public CSVWriter(Path path) throws IOException {
+		this(path, false);
+	}
+	
+	/**
+	 * Creates a new instance that either overwrites or appends to the CSV file <code>path</code>. When appending to a
+	 * non-empty file, no header is written, i.e., the existing file must have been created with the same metrics.
+	 *
+	 * @param path   The path to the CSV file
+	 * @param append Whether to append to the CSV file instead of overwriting it
+	 * @throws IOException In case opening the CSV file fails
+	 */
+	public CSVWriter(Path path, boolean append) throws IOException {
+		if (append) {
+			first = !Files.exists(path) || Files.size(path) == 0;
+			bw = Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} else {
+			first = true;
+			bw = Files.newBufferedWriter(path);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UncheckedIOException In case writing to the CSV file fails
+	 */
+	@Override
+	public void accept(FolderComparison folderComparison) {
+		try {
+			if (first) {
+				bw.write(folderComparison.getCSVHeader());
+				bw.newLine();
+				first = false;
+			}
+			bw.write(folderComparison.getCSVString());
+			bw.newLine();
+			bw.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The rows are written directly from the columns of the table, without creating any {@link FolderComparison}s or
+	 * {@link TypeComparison}s.
+	 *
+	 * @throws UncheckedIOException In case writing to the CSV file fails
+	 */
+	@Override
+	public void accept(ComparisonTable table) {
+		if (table.size() == 0) {
+			return;
+		}
+		try {
+			StringBuilder sb = new StringBuilder();
+			if (first) {
+				sb.append("folder1,folder2,file1,file2,type1,type2");
+				for (MetricScorer metricScorer : table.getMetricScorers()) {
+					sb.append(',').append(StringEscapeUtils.escapeCsv(metricScorer.getName()));
+				}
+				sb.append(",approximate");
+				bw.write(sb.toString());
+				bw.newLine();
+				first = false;
+			}
+			int numMetrics = table.getMetricScorers().size();
+			double[] scores = table.getScores();
+			for (int row = 0; row < table.size(); row++) {
+				sb.setLength(0);
+				sb.append(StringEscapeUtils.escapeCsv(table.getFolder1(row))).append(',')
+						.append(StringEscapeUtils.escapeCsv(table.getFolder2(row))).append(',')
+						.append(StringEscapeUtils.escapeCsv(table.getFile1(row))).append(',')
+						.append(StringEscapeUtils.escapeCsv(table.getFile2(row))).append(',')
+						.append(StringEscapeUtils.escapeCsv(table.getType1(row))).append(',')
+						.append(StringEscapeUtils.escapeCsv(table.getType2(row)));
+				for (int i = row * numMetrics; i < (row + 1) * numMetrics; i++) {
+					sb.append(',').append(scores[i]);
+				}
+				sb.append(',').append(table.isApproximate(row));
+				bw.write(sb.toString());
+				bw.newLine();
+			}
+			bw.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		bw.close();
+	}
+	
+}
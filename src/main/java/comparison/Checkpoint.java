@@ -0,0 +1,132 @@
+package comparison;
+
+import comparison.scoring.metrics.MetricScorer;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.text.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checkpoint file that records all completed folder pairs of a comparison run, so that a restarted run with the same
+ * inputs can skip them (see {@link Comparer#setCheckpoint(Checkpoint)}). The actual results of the completed folder
+ * pairs are the rows of the CSV file that is written during the run (see {@link CSVWriter}), which must thus be kept
+ * together with the checkpoint file (see {@link #restoreCSV(Path, List, ComparisonSink)}).
+ * <p>
+ * A folder pair is only recorded after its results have been written to the CSV file. If the program is terminated
+ * between these two steps, the CSV file contains results of a folder pair that is not recorded as completed, which
+ * are removed again when restoring the CSV file.
+ */
+public class Checkpoint implements Closeable {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(Checkpoint.class);
+	
+	private final Path path;
+	private final Set<Pair<String, String>> completed;
+	private BufferedWriter bw;
+	
+	/**
+	 * Opens the checkpoint file <code>path</code>. If it already exists, all folder pairs recorded in it are treated
+	 * as completed. Otherwise, a new, empty checkpoint file is created.
+	 *
+	 * @param path The path to the checkpoint file
+	 * @throws IOException In case reading or creating the checkpoint file fails
+	 */
+	public Checkpoint(Path path) throws IOException {
+		this.path = path;
+		completed = new HashSet<>();
+		if (Files.exists(path)) {
+			try (BufferedReader br = Files.newBufferedReader(path)) {
+				List<String> record;
+				while ((record = CSVReading.readRecord(br)) != null) {
+					// A record with a different size can only be the last one if writing it was interrupted
+					if (record.size() == 2) {
+						completed.add(Pair.of(record.get(0), record.get(1)));
+					}
+				}
+			}
+			LOGGER.info("resuming from checkpoint '{}' with {} completed folder pairs", path, completed.size());
+		}
+		bw = Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+	
+	/**
+	 * Returns whether there are any completed folder pairs from a previous run.
+	 */
+	public boolean isResumed() {
+		return !completed.isEmpty();
+	}
+	
+	public synchronized boolean isCompleted(String folder1, String folder2) {
+		return completed.contains(Pair.of(folder1, folder2));
+	}
+	
+	/**
+	 * Records the folder pair <code>folder1</code> and <code>folder2</code> as completed. The checkpoint file is
+	 * flushed immediately.
+	 *
+	 * @param folder1 The first folder of the completed pair
+	 * @param folder2 The second folder of the completed pair
+	 * @throws UncheckedIOException In case writing to the checkpoint file fails
+	 */
+	public synchronized void markCompleted(String folder1, String folder2) {
+		try {
+			bw.write(StringEscapeUtils.escapeCsv(folder1) + "," + StringEscapeUtils.escapeCsv(folder2));
+			bw.newLine();
+			bw.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		completed.add(Pair.of(folder1, folder2));
+	}
+	
+	/**
+	 * Prepares the CSV file <code>csvPath</code> of the previous run for appending the results of the resumed run:
+	 * All rows of folder pairs that are not recorded as completed are removed, and all remaining
+	 * {@link FolderComparison}s are passed to <code>replaySink</code> (e.g., to detect plagiarism in them again). If
+	 * the CSV file does not exist, the results of all completed folder pairs are lost, so they are no longer treated as
+	 * completed, and the checkpoint file is reset.
+	 *
+	 * @param csvPath       The path to the CSV file of the previous run
+	 * @param metricScorers The {@link MetricScorer}s that were used to create the CSV file
+	 * @param replaySink    The sink that receives all {@link FolderComparison}s of completed folder pairs
+	 * @throws IOException In case any of the IO operations fail
+	 */
+	public synchronized void restoreCSV(Path csvPath, List<MetricScorer> metricScorers, ComparisonSink replaySink) throws IOException {
+		if (!Files.exists(csvPath)) {
+			LOGGER.warn("CSV file '{}' of checkpoint '{}' does not exist, starting from scratch", csvPath, path);
+			completed.clear();
+			bw.close();
+			bw = Files.newBufferedWriter(path);
+			return;
+		}
+		Path tmp = Files.createTempFile(csvPath.toAbsolutePath().getParent(), csvPath.getFileName().toString(), ".tmp");
+		try {
+			try (CSVWriter csvWriter = new CSVWriter(tmp)) {
+				CSVReading.readCSV(csvPath, metricScorers, fc -> {
+					if (completed.contains(Pair.of(fc.getFolder1(), fc.getFolder2()))) {
+						csvWriter.accept(fc);
+						replaySink.accept(fc);
+					}
+				});
+			}
+			Files.move(tmp, csvPath, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		bw.close();
+	}
+	
+}
@@ -0,0 +1,305 @@
+package comparison;
+
+import comparison.scoring.metrics.MetricScorer;
+import org.apache.commons.text.StringEscapeUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sink that writes all received {@link FolderComparison}s in a binary, columnar format to a directory, which is much
+ * faster to write and read than CSV files (see {@link CSVWriter}). Every column is a separate file of raw
+ * little-endian values, so it can be memory-mapped directly (e.g., with <code>numpy.memmap</code>, see
+ * <code>python/util/io.py</code>):
+ * <ul>
+ *     <li><code>folder1.i32</code>, <code>folder2.i32</code>, <code>file1.i32</code>, <code>file2.i32</code>,
+ *     <code>type1.i32</code>, <code>type2.i32</code>, <code>student1.i32</code>, <code>student2.i32</code>: 32-bit
+ *     integer IDs into the dictionary (dictionary encoding)</li>
+ *     <li><code>metric_&lt;name&gt;.f64</code>: 64-bit floating point scores of the {@link MetricScorer} with the
+ *     respective name</li>
+ *     <li><code>approximate.u8</code>: 1 if the comparison is approximate, 0 otherwise</li>
+ *     <li><code>dictionary.jsonl</code>: all strings of the dictionary, one JSON string per line, where the line
+ *     index is the ID</li>
+ *     <li><code>schema.json</code>: the number of rows and the names of all columns, written when closing</li>
+ * </ul>
+ * The student columns contain the student (matriculation number or name) extracted from the folder names (see
+ * {@link #extractStudent(String)}), so that they do not have to be computed when reading.
+ * <p>
+ * All columns are written in a streaming way, i.e., only a small buffer per column is kept in memory. Unlike
+ * {@link CSVWriter}, the files are not flushed after every folder comparison, so the output is only complete after
+ * {@link #close()}.
+ */
+public class ColumnarWriter implements ComparisonSink {
+	
+	private static final String FORMAT_VERSION = "1";
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final Pattern MATRICULATION_NUMBER = Pattern.compile("[kK]\\d{6,8}");
+	
+	/**
+	 * A single column file with its write buffer.
+	 */
+	private static class Column {
+		
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		
+		Column(Path path) throws IOException {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		void putInt(int value) throws IOException {
+			ensureRemaining(Integer.BYTES);
+			buffer.putInt(value);
+		}
+		
+		void putDouble(double value) throws IOException {
+			ensureRemaining(Double.BYTES);
+			buffer.putDouble(value);
+		}
+		
+		void putBoolean(boolean value) throws IOException {
+			ensureRemaining(1);
+			buffer.put((byte) (value ? 1 : 0));
+		}
+		
+		private void ensureRemaining(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+		
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+		
+		void close() throws IOException {
+			flush();
+			channel.close();
+		}
+		
+	}
+	
+	private final Path dir;
+	private final List<String> metricNames;
+	private final Map<String, Column> idColumns;
+	private final List<Column> metricColumns;
+	private final Column approximateColumn;
+	private final Map<String, Integer> dictionary;
+	private final BufferedWriter dictionaryWriter;
+	private long rows;
+	
+	/**
+	 * Creates a new instance that writes to the directory <code>dir</code>, which is created if it does not exist.
+	 * Existing column files in this directory are overwritten.
+	 *
+	 * @param dir           The output directory
+	 * @param metricScorers The {@link MetricScorer}s of all received comparisons, which define the metric columns
+	 * @throws IOException In case creating the directory or opening the column files fails
+	 */
+	public ColumnarWriter(Path dir, List<MetricScorer> metricScorers) throws IOException {
+		this.dir = dir;
+		Files.createDirectories(dir);
+		metricNames = metricScorers.stream().map(MetricScorer::getName).toList();
+		if (new HashSet<>(metricNames).size() != metricNames.size()) {
+			throw new IllegalArgumentException("metric names must be unique: " + metricNames);
+		}
+		idColumns = new LinkedHashMap<>();
+		for (String name : List.of("folder1", "folder2", "file1", "file2", "type1", "type2", "student1", "student2")) {
+			idColumns.put(name, new Column(dir.resolve(name + ".i32")));
+		}
+		metricColumns = new ArrayList<>();
+		for (String name : metricNames) {
+			metricColumns.add(new Column(dir.resolve("metric_" + name + ".f64")));
+		}
+		approximateColumn = new Column(dir.resolve("approximate.u8"));
+		dictionary = new HashMap<>();
+		dictionaryWriter = Files.newBufferedWriter(dir.resolve("dictionary.jsonl"));
+		rows = 0;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UncheckedIOException In case writing to the column files fails
+	 */
+	@Override
+	public void accept(FolderComparison folderComparison) {
+		try {
+			int folder1 = encode(folderComparison.getFolder1());
+			int folder2 = encode(folderComparison.getFolder2());
+			// Once per folder comparison instead of once per row
+			int student1 = encode(extractStudent(folderComparison.getFolder1()));
+			int student2 = encode(extractStudent(folderComparison.getFolder2()));
+			for (TypeComparison tc : folderComparison.getTypeComparisons()) {
+				double[] scores = tc.getScores();
+				if (scores.length != metricColumns.size()) {
+					throw new IllegalArgumentException("number of scores does not match the metric columns");
+				}
+				idColumns.get("folder1").putInt(folder1);
+				idColumns.get("folder2").putInt(folder2);
+				idColumns.get("file1").putInt(encode(tc.getFile1().toString()));
+				idColumns.get("file2").putInt(encode(tc.getFile2().toString()));
+				idColumns.get("type1").putInt(encode(tc.getType1()));
+				idColumns.get("type2").putInt(encode(tc.getType2()));
+				idColumns.get("student1").putInt(student1);
+				idColumns.get("student2").putInt(student2);
+				for (int i = 0; i < scores.length; i++) {
+					metricColumns.get(i).putDouble(scores[i]);
+				}
+				approximateColumn.putBoolean(tc.isApproximate());
+				rows++;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The rows are written directly from the columns of the table, without creating any {@link FolderComparison}s or
+	 * {@link TypeComparison}s.
+	 *
+	 * @throws UncheckedIOException In case writing to the column files fails
+	 */
+	@Override
+	public void accept(ComparisonTable table) {
+		if (table.getMetricScorers().size() != metricColumns.size()) {
+			throw new IllegalArgumentException("number of scores does not match the metric columns");
+		}
+		try {
+			int numMetrics = metricColumns.size();
+			double[] scores = table.getScores();
+			String previousFolder1 = null;
+			String previousFolder2 = null;
+			int folder1 = -1;
+			int folder2 = -1;
+			int student1 = -1;
+			int student2 = -1;
+			for (int row = 0; row < table.size(); row++) {
+				// Rows of the same folder pair are consecutive, so only encode the folders when they change
+				if (!table.getFolder1(row).equals(previousFolder1)) {
+					previousFolder1 = table.getFolder1(row);
+					folder1 = encode(previousFolder1);
+					student1 = encode(extractStudent(previousFolder1));
+				}
+				if (!table.getFolder2(row).equals(previousFolder2)) {
+					previousFolder2 = table.getFolder2(row);
+					folder2 = encode(previousFolder2);
+					student2 = encode(extractStudent(previousFolder2));
+				}
+				idColumns.get("folder1").putInt(folder1);
+				idColumns.get("folder2").putInt(folder2);
+				idColumns.get("file1").putInt(encode(table.getFile1(row)));
+				idColumns.get("file2").putInt(encode(table.getFile2(row)));
+				idColumns.get("type1").putInt(encode(table.getType1(row)));
+				idColumns.get("type2").putInt(encode(table.getType2(row)));
+				idColumns.get("student1").putInt(student1);
+				idColumns.get("student2").putInt(student2);
+				for (int i = 0; i < numMetrics; i++) {
+					metricColumns.get(i).putDouble(scores[row * numMetrics + i]);
+				}
+				approximateColumn.putBoolean(table.isApproximate(row));
+				rows++;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Returns the dictionary ID of <code>s</code>, adding it to the dictionary if it is not contained yet.
+	 */
+	private int encode(String s) throws IOException {
+		Integer id = dictionary.get(s);
+		if (id == null) {
+			id = dictionary.size();
+			dictionary.put(s, id);
+			dictionaryWriter.write('"' + StringEscapeUtils.escapeJson(s) + '"');
+			dictionaryWriter.newLine();
+		}
+		return id;
+	}
+	
+	/**
+	 * Extracts the student from the folder name, which is the same as <code>extract_student</code> of
+	 * <code>python/util/io.py</code>: The matriculation number (padded with zeros to 8 characters) if the folder name
+	 * contains one, or otherwise, the full name if the folder name has the format of Moodle submissions
+	 * (<code>&lt;full name&gt;_&lt;internal ID&gt;_assignsubmission_file_</code>), or otherwise, the folder itself.
+	 *
+	 * @param folder The folder of a submission
+	 * @return The student of the submission
+	 */
+	public static String extractStudent(String folder) {
+		Path fileName = Path.of(folder).getFileName();
+		String dirName = fileName == null ? "" : fileName.toString();
+		Matcher matcher = MATRICULATION_NUMBER.matcher(dirName);
+		if (matcher.find()) {
+			return "0".repeat(Math.max(0, 8 - matcher.group().length())) + matcher.group();
+		}
+		if (dirName.contains("_")) {
+			return dirName.substring(0, dirName.indexOf('_'));
+		}
+		return folder;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		// Close all files even if some of them fail
+		List<Column> columns = new ArrayList<>(idColumns.values());
+		columns.addAll(metricColumns);
+		columns.add(approximateColumn);
+		for (Column column : columns) {
+			try {
+				column.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		try {
+			dictionaryWriter.close();
+			writeSchema();
+		} catch (IOException e) {
+			if (exception == null) {
+				exception = e;
+			} else {
+				exception.addSuppressed(e);
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+	
+	private void writeSchema() throws IOException {
+		StringJoiner metrics = new StringJoiner(", ", "[", "]");
+		metricNames.forEach(name -> metrics.add('"' + StringEscapeUtils.escapeJson(name) + '"'));
+		StringJoiner idColumnNames = new StringJoiner(", ", "[", "]");
+		idColumns.keySet().forEach(name -> idColumnNames.add('"' + name + '"'));
+		String schema = String.format("{\"version\": \"%s\", \"rows\": %d, \"idColumns\": %s, \"metrics\": %s}%n",
+				FORMAT_VERSION, rows, idColumnNames, metrics);
+		Files.writeString(dir.resolve("schema.json"), schema, StandardCharsets.UTF_8);
+	}
+	
+}
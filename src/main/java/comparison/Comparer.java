@@ -1,49 +1,62 @@
 package comparison;
 
+import ast.ASTCache;
 import ast.ASTRenamer;
+import ast.ReferenceCorpus;
+import ast.Template;
 import ast.Type;
+import comparison.scoring.ASTDiffCache;
 import comparison.scoring.metrics.*;
+import detection.PlagiarismDetection;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Set;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class Comparer {
 	
 	private final TypeMatcher typeMatcher;
 	private final List<MetricScorer> metricScorers;
+	private final ASTDiffCache diffCache;
 	private final boolean parallel;
+	private int threads;
+	private int maxParsedFolders;
+	private ASTCache astCache;
+	private FingerprintIndex fingerprintIndex;
+	private Checkpoint checkpoint;
+	private Map<String, Map<String, String>> inMemoryFolders;
+	private boolean deduplicate;
+	private Template template;
+	private PlagiarismDetection earlyExitDetection;
+	private boolean releaseModels;
+	private final int[] metricOrder;
+	private final StringDictionary strings;
 	
 	/**
-	 * Creates a new instance with a default {@link TypeMatcher#TypeMatcher() TypeMatcher} and the following default
-	 * list of {@link MetricScorer}s:
-	 * <ul>
-	 *     <li>{@link ASTDiffMetricScorer#ASTDiffMetricScorer(boolean) ASTDiffMetricScorer(false)}</li>
-	 *     <li>{@link ASTDiffMetricScorer#ASTDiffMetricScorer(boolean) ASTDiffMetricScorer(true)}</li>
-	 *     <li>{@link ASTCountDiffMetricScorer#ASTCountDiffMetricScorer(boolean) ASTDiffMetricScorer(false)}</li>
-	 *     <li>{@link JaccardMetricScorer#JaccardMetricScorer(boolean) JaccardMetricScorer(false)}</li>
-	 *     <li>{@link JaccardMetricScorer#JaccardMetricScorer(boolean) JaccardMetricScorer(true)}</li>
-	 *     <li>{@link JaroWinklerMetricScorer#JaroWinklerMetricScorer(boolean) JaroWinklerMetricScorer(false)}</li>
-	 *     <li>{@link JaroWinklerMetricScorer#JaroWinklerMetricScorer(boolean) JaroWinklerMetricScorer(true)}</li>
-	 * </ul>
+	 * Creates a new instance with a default {@link TypeMatcher#TypeMatcher(int, ASTDiffCache) TypeMatcher} (without
+	 * pre-ranking) and the default list of {@link MetricScorer}s (see {@link #createDefaultMetricScorers(ASTDiffCache)}),
+	 * which share a single {@link ASTDiffCache}.
 	 *
 	 * @param parallel Whether to use parallelism
-	 * @see #Comparer(TypeMatcher, List, boolean)
+	 * @see #Comparer(TypeMatcher, List, ASTDiffCache, boolean)
 	 */
 	public Comparer(boolean parallel) {
-		this(new TypeMatcher(), List.of(
-				new ASTDiffMetricScorer(false),
-				new ASTDiffMetricScorer(true),
-				new ASTCountDiffMetricScorer(false),
-				new JaccardMetricScorer(false),
-				new JaccardMetricScorer(true),
-				new JaroWinklerMetricScorer(false),
-				new JaroWinklerMetricScorer(true)
-		), parallel);
+		this(new ASTDiffCache(), parallel);
+	}
+	
+	private Comparer(ASTDiffCache diffCache, boolean parallel) {
+		this(new TypeMatcher(0, diffCache), createDefaultMetricScorers(diffCache), diffCache, parallel);
 	}
 	
 	/**
@@ -57,9 +70,330 @@ public class Comparer {
 	 * @param parallel      Whether to use parallelism
 	 */
 	public Comparer(TypeMatcher typeMatcher, List<MetricScorer> metricScorers, boolean parallel) {
+		this(typeMatcher, metricScorers, null, parallel);
+	}
+	
+	/**
+	 * Creates a new instance using the specified arguments.
+	 *
+	 * @param typeMatcher   The type matcher to use when comparing the individual types of two folders in
+	 *                      {@link #compare(List, Set)}. For any two folders, this will result in pairs of matching
+	 *                      types
+	 * @param metricScorers The list of {@link MetricScorer}s to compute metrics for each identified pair of matching
+	 *                      types (see <code>typeMatcher</code>)
+	 * @param diffCache     The diff cache that is shared by the scorers of <code>typeMatcher</code> and
+	 *                      <code>metricScorers</code>, or <code>null</code> if there is no such cache. If specified, the
+	 *                      cached diffs of two folders are evicted as soon as the comparison of these two folders is
+	 *                      done
+	 * @param parallel      Whether to use parallelism
+	 */
+	public Comparer(TypeMatcher typeMatcher, List<MetricScorer> metricScorers, ASTDiffCache diffCache, boolean parallel) {
 		this.typeMatcher = typeMatcher;
 		this.metricScorers = metricScorers;
+		this.diffCache = diffCache;
 		this.parallel = parallel;
+		threads = 0;
+		maxParsedFolders = 0;
+		astCache = null;
+		fingerprintIndex = null;
+		checkpoint = null;
+		// Stable sort, so metrics with the same cost keep their order
+		metricOrder = IntStream.range(0, metricScorers.size()).boxed()
+				.sorted(Comparator.comparingInt(i -> metricScorers.get(i).getCost()))
+				.mapToInt(Integer::intValue)
+				.toArray();
+		strings = new StringDictionary();
+	}
+	
+	/**
+	 * Creates the following default list of {@link MetricScorer}s:
+	 * <ul>
+	 *     <li>{@link ASTDiffMetricScorer#ASTDiffMetricScorer(boolean, ASTDiffCache) ASTDiffMetricScorer(false, diffCache)}</li>
+	 *     <li>{@link ASTDiffMetricScorer#ASTDiffMetricScorer(boolean, ASTDiffCache) ASTDiffMetricScorer(true, diffCache)}</li>
+	 *     <li>{@link ASTCountDiffMetricScorer#ASTCountDiffMetricScorer(boolean) ASTDiffMetricScorer(false)}</li>
+	 *     <li>{@link JaccardMetricScorer#JaccardMetricScorer(boolean) JaccardMetricScorer(false)}</li>
+	 *     <li>{@link JaccardMetricScorer#JaccardMetricScorer(boolean) JaccardMetricScorer(true)}</li>
+	 *     <li>{@link JaroWinklerMetricScorer#JaroWinklerMetricScorer(boolean) JaroWinklerMetricScorer(false)}</li>
+	 *     <li>{@link JaroWinklerMetricScorer#JaroWinklerMetricScorer(boolean) JaroWinklerMetricScorer(true)}</li>
+	 * </ul>
+	 * If <code>diffCache</code> is <code>null</code>, the diff metric scorers use
+	 * {@link ASTDiffMetricScorer#ASTDiffMetricScorer(boolean)} instead, i.e., they compute their diffs without any cache.
+	 *
+	 * @param diffCache The cache to get the diffs from, or <code>null</code> to compute them without any cache
+	 * @return The default list of {@link MetricScorer}s
+	 */
+	public static List<MetricScorer> createDefaultMetricScorers(ASTDiffCache diffCache) {
+		return List.of(
+				diffCache == null ? new ASTDiffMetricScorer(false) : new ASTDiffMetricScorer(false, diffCache),
+				diffCache == null ? new ASTDiffMetricScorer(true) : new ASTDiffMetricScorer(true, diffCache),
+				new ASTCountDiffMetricScorer(false),
+				new JaccardMetricScorer(false),
+				new JaccardMetricScorer(true),
+				new JaroWinklerMetricScorer(false),
+				new JaroWinklerMetricScorer(true)
+		);
+	}
+	
+	/**
+	 * Creates the {@link MetricScorer}s with the specified <code>names</code> (see {@link MetricScorer#getName()}), in
+	 * the same order. In addition to the default {@link MetricScorer}s (see
+	 * {@link #createDefaultMetricScorers(ASTDiffCache)}), the following {@link MetricScorer}s are available (each with
+	 * and without prefix <code>"Renamed"</code>):
+	 * <ul>
+	 *     <li><code>"ASTDiffMetric"</code>, <code>"ASTCountDiffMetric"</code>, <code>"JaccardMetric"</code>,
+	 *     <code>"JaroWinklerMetric"</code>: Same as the default {@link MetricScorer}s</li>
+	 *     <li><code>"MinHashJaccardMetric"</code>: {@link MinHashJaccardMetricScorer#MinHashJaccardMetricScorer(boolean)}</li>
+	 *     <li><code>"GreedyStringTilingMetric"</code>: {@link GreedyStringTilingMetricScorer#GreedyStringTilingMetricScorer(boolean)}</li>
+	 * </ul>
+	 *
+	 * @param names     The names of the {@link MetricScorer}s to create
+	 * @param diffCache The cache to get the diffs from, or <code>null</code> to compute them without any cache
+	 * @return The list of {@link MetricScorer}s with the specified <code>names</code>
+	 * @throws IllegalArgumentException If there is no {@link MetricScorer} with one of the specified <code>names</code>
+	 */
+	public static List<MetricScorer> createMetricScorers(List<String> names, ASTDiffCache diffCache) {
+		Map<String, MetricScorer> available = new LinkedHashMap<>();
+		for (boolean useRenamed : new boolean[]{false, true}) {
+			List.of(
+					diffCache == null ? new ASTDiffMetricScorer(useRenamed) : new ASTDiffMetricScorer(useRenamed, diffCache),
+					new ASTCountDiffMetricScorer(useRenamed),
+					new JaccardMetricScorer(useRenamed),
+					new JaroWinklerMetricScorer(useRenamed),
+					new MinHashJaccardMetricScorer(useRenamed),
+					new GreedyStringTilingMetricScorer(useRenamed)
+			).forEach(scorer -> available.put(scorer.getName(), scorer));
+		}
+		List<MetricScorer> metricScorers = new ArrayList<>(names.size());
+		for (String name : names) {
+			MetricScorer scorer = available.get(name);
+			if (scorer == null) {
+				throw new IllegalArgumentException("unknown metric '" + name + "' (available metrics: " + available.keySet() + ")");
+			}
+			metricScorers.add(scorer);
+		}
+		return metricScorers;
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Sets the number of threads of the dedicated thread pool that compares the folder pairs in parallel mode (see
+	 * {@link #compare(List, Set, ComparisonSink)}). If less than or equal to 0 (default), the number of available
+	 * processors is used. This setting has no effect if parallelism is disabled.
+	 *
+	 * @param threads The number of threads, or a value less than or equal to 0 to use all available processors
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	public int getMaxParsedFolders() {
+		return maxParsedFolders;
+	}
+	
+	/**
+	 * Sets the maximum number of folders whose parsed types are kept in memory during {@link #compare(List, Set)}. By
+	 * default (value less than or equal to 0), every folder is parsed exactly once up front and kept in memory for the
+	 * entire comparison. If all parsed folders do not fit into memory, a positive value bounds the number of folders
+	 * kept in memory at the same time, at the cost of parsing folders multiple times.
+	 *
+	 * @param maxParsedFolders The maximum number of parsed folders that are kept in memory, or a value less than or
+	 *                         equal to 0 to keep all of them
+	 */
+	public void setMaxParsedFolders(int maxParsedFolders) {
+		this.maxParsedFolders = maxParsedFolders;
+	}
+	
+	public ASTCache getASTCache() {
+		return astCache;
+	}
+	
+	/**
+	 * Sets the persistent cache to load the parsed types of folders from during {@link #compare(List, Set)}. If
+	 * <code>null</code> (default), no cache is used and all folders are parsed from scratch.
+	 *
+	 * @param astCache The cache to use, or <code>null</code> to disable caching
+	 */
+	public void setASTCache(ASTCache astCache) {
+		this.astCache = astCache;
+	}
+	
+	public FingerprintIndex getFingerprintIndex() {
+		return fingerprintIndex;
+	}
+	
+	/**
+	 * Sets the index that selects the folder pairs to compare in {@link #compare(List, Set)}. If <code>null</code>
+	 * (default), all possible folder pairs are compared.
+	 *
+	 * @param fingerprintIndex The index to select folder pairs with, or <code>null</code> to compare all folder pairs
+	 */
+	public void setFingerprintIndex(FingerprintIndex fingerprintIndex) {
+		this.fingerprintIndex = fingerprintIndex;
+	}
+	
+	public Checkpoint getCheckpoint() {
+		return checkpoint;
+	}
+	
+	/**
+	 * Sets the checkpoint that records all completed folder pairs in {@link #compare(List, Set, ComparisonSink)}.
+	 * Folder pairs that are already recorded as completed are skipped. If <code>null</code> (default), no checkpoint
+	 * is used.
+	 *
+	 * @param checkpoint The checkpoint to use, or <code>null</code> to disable checkpointing
+	 */
+	public void setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+	
+	public Map<String, Map<String, String>> getInMemoryFolders() {
+		return inMemoryFolders;
+	}
+	
+	/**
+	 * Sets the source files of folders that are not parsed from disk but from memory (see
+	 * {@link util.SubmissionUnpacking#loadMoodleSubmissions(Path, boolean)}). Folders that are contained in this map
+	 * are parsed from their in-memory source files and bypass the {@link ASTCache}, since the cache validates its
+	 * entries against the source files on disk. All other folders are parsed from disk as usual. If <code>null</code>
+	 * (default), all folders are parsed from disk.
+	 *
+	 * @param inMemoryFolders The map of folders to their source files (file path to source code), or <code>null</code>
+	 */
+	public void setInMemoryFolders(Map<String, Map<String, String>> inMemoryFolders) {
+		this.inMemoryFolders = inMemoryFolders;
+	}
+	
+	public boolean isDeduplicate() {
+		return deduplicate;
+	}
+	
+	/**
+	 * Sets whether {@link #compare(List, Set, ComparisonSink)} should collapse folders with identical (normalized)
+	 * source files before the comparison (default: <code>false</code>). If enabled, only one representative of each
+	 * group of identical folders is parsed and compared, and the results are expanded back to all folders of the
+	 * groups afterward. Folders within the same group are not compared at all but get a comparison where every type
+	 * is matched to itself with a distance of 0 for all metrics.
+	 * <p>
+	 * The expanded folder pairs keep the order of the representatives, i.e., the first folder of a pair is a duplicate
+	 * of the first representative, which might come after the second folder in the original list of folders.
+	 *
+	 * @param deduplicate Whether to collapse identical folders
+	 */
+	public void setDeduplicate(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+	
+	public Template getTemplate() {
+		return template;
+	}
+	
+	/**
+	 * Sets the template code that is subtracted from all parsed folders before renaming and comparing their types (see
+	 * {@link Template}). Since the template changes the parsed types, it is part of the settings of the
+	 * {@link ASTCache} and {@link ReferenceCorpus}. If <code>null</code> (default), nothing is subtracted.
+	 *
+	 * @param template The template code to subtract, or <code>null</code>
+	 */
+	public void setTemplate(Template template) {
+		this.template = template;
+	}
+	
+	public PlagiarismDetection getEarlyExitDetection() {
+		return earlyExitDetection;
+	}
+	
+	/**
+	 * Sets the plagiarism detection that enables the "detection-only" mode: The metrics of every pair of matching types
+	 * are computed in the order of their cost (cheapest first, see {@link MetricScorer#getCost()}), and as soon as the
+	 * computed scores rule out plagiarism (see {@link PlagiarismDetection#canBePlagiarism(List, double[], int)}), the
+	 * remaining (expensive) metrics are skipped and their scores are {@link Double#NaN}. Therefore, the resulting
+	 * comparisons are only suitable for detecting plagiarism with the same <code>earlyExitDetection</code>, but not for
+	 * exporting them (e.g., with {@link CSVWriter}). If <code>null</code> (default), all metrics are always computed.
+	 * <p>
+	 * Since the type matcher usually ranks the candidates with diffs as well, the bound is also applied before
+	 * matching: A candidate is only relevant if the metrics cheaper than a tree diff (see
+	 * {@link MetricScorer#COST_TREE_DIFF}) do not rule out plagiarism, and types without any relevant candidate are
+	 * matched without diffs (see {@link TypeMatcher#setCandidateFilter(java.util.function.BiPredicate)}). Their match
+	 * cannot be detected as plagiarism either way, so the detected comparisons stay the same (except for optimal
+	 * assignments, see {@link TypeMatcher#setOptimalAssignment(boolean)}, where every match affects the others).
+	 *
+	 * @param earlyExitDetection The plagiarism detection that decides when to stop computing metrics, or
+	 *                           <code>null</code>
+	 */
+	public void setEarlyExitDetection(PlagiarismDetection earlyExitDetection) {
+		this.earlyExitDetection = earlyExitDetection;
+		typeMatcher.setCandidateFilter(earlyExitDetection == null ? null : this::canBePlagiarismCheaply);
+	}
+	
+	public boolean isReleaseModels() {
+		return releaseModels;
+	}
+	
+	/**
+	 * Sets whether the Spoon models of all parsed types are released right after parsing (see
+	 * {@link Type#releaseModel()}), so that only their flat trees and other features are kept in memory (default:
+	 * <code>false</code>). This considerably reduces the memory of parsed folders (see
+	 * {@link #setMaxParsedFolders(int)}) but requires that no scorer needs the Spoon models. In particular, the diffs
+	 * must be computed on the flat trees, so enabling this also enables {@link ASTDiffCache#setFlatDiff(boolean)} of the
+	 * diff cache of this comparer.
+	 *
+	 * @param releaseModels Whether to release the Spoon models of parsed types
+	 * @throws IllegalStateException If <code>releaseModels</code> is <code>true</code> but this comparer has no diff
+	 *                               cache (see {@link #Comparer(TypeMatcher, List, ASTDiffCache, boolean)})
+	 */
+	public void setReleaseModels(boolean releaseModels) {
+		if (releaseModels && diffCache == null) {
+			throw new IllegalStateException("releasing the models requires a diff cache that computes flat diffs");
+		}
+		this.releaseModels = releaseModels;
+		if (releaseModels) {
+			diffCache.setFlatDiff(true);
+		}
+	}
+	
+	public List<MetricScorer> getMetricScorers() {
+		return metricScorers;
+	}
+	
+	/**
+	 * Returns the {@link StringDictionary} of the folders, files and type names, which is shared by all
+	 * {@link ComparisonTable}s that are created by this comparer, so that their IDs are the same.
+	 */
+	public StringDictionary getStrings() {
+		return strings;
+	}
+	
+	/**
+	 * Same as {@link #compare(List, Set, ComparisonSink)}, but collects all {@link FolderComparison}s in a list. Note
+	 * that this list must fit into memory, which might not be the case for a large number of folders.
+	 *
+	 * @param folders           The list of folders for which all possible pairs will be created and used for comparison
+	 * @param excludedTypeNames The set of type names that should be excluded from any comparison within two folders
+	 * @return A list of {@link FolderComparison}s for each folder pair
+	 */
+	public List<FolderComparison> compare(List<String> folders, Set<String> excludedTypeNames) {
+		List<FolderComparison> comparisons = new ArrayList<>();
+		compare(folders, excludedTypeNames, comparisons::add);
+		return comparisons;
+	}
+	
+	/**
+	 * Same as {@link #compare(List, Set, ComparisonSink)}, but collects all comparisons in a compact
+	 * {@link ComparisonTable}, whose score columns are in the order of {@link #getMetricScorers()}. Compared to
+	 * {@link #compare(List, Set)}, the comparisons need much less memory, since they are not kept as individual
+	 * objects.
+	 *
+	 * @param folders           The list of folders for which all possible pairs will be created and used for comparison
+	 * @param excludedTypeNames The set of type names that should be excluded from any comparison within two folders
+	 * @return A table with all type comparisons of all folder pairs
+	 */
+	public ComparisonTable compareToTable(List<String> folders, Set<String> excludedTypeNames) {
+		ComparisonTable table = new ComparisonTable(metricScorers, strings);
+		compare(folders, excludedTypeNames, table);
+		return table;
 	}
 	
 	/**
@@ -68,58 +402,470 @@ public class Comparer {
 	 * list <code>folders</code> and computes a {@link FolderComparison} for each of those folder pairs. In case any of
 	 * the two folders within a folder pair does not contain any types that could be compared, this folder pair is
 	 * dropped and no comparison is computed.
+	 * <p>
+	 * Each folder is parsed only once (see {@link #setMaxParsedFolders(int)} for bounding the memory consumption) and
+	 * then reused for all folder pairs it is part of. If a {@link FingerprintIndex} is set (see
+	 * {@link #setFingerprintIndex(FingerprintIndex)}), only the folder pairs selected by this index are compared. If
+	 * a {@link Checkpoint} is set (see {@link #setCheckpoint(Checkpoint)}), all folder pairs that are recorded as
+	 * completed are skipped, and every newly compared folder pair is recorded right after its comparison was passed
+	 * to <code>sink</code>. If deduplication is enabled (see {@link #setDeduplicate(boolean)}), only one folder of each
+	 * group of identical folders is compared.
+	 * <p>
+	 * In parallel mode, the folder pairs are compared on a dedicated thread pool (see {@link #setThreads(int)}), where
+	 * the most expensive folder pairs are started first. The cost of a folder pair is estimated as the product of the
+	 * number of AST elements of both folders, as every type of one folder is diffed against (many) types of the other
+	 * folder. This way, the threads do not end up waiting for a few expensive folder pairs at the end of the
+	 * comparison.
+	 * <p>
+	 * The type comparisons of each folder pair are computed directly into a {@link ComparisonTable}, which is passed to
+	 * <code>sink</code> as soon as it is complete (see {@link ComparisonSink#accept(ComparisonTable)}) and not kept in
+	 * memory afterward. In parallel mode, the comparisons are passed in the order of their completion. This method does not
+	 * close <code>sink</code>.
 	 *
 	 * @param folders           The list of folders for which all possible pairs will be created and used for comparison
 	 * @param excludedTypeNames The set of type names that should be excluded from any comparison within two folders
-	 * @return A list of {@link FolderComparison}s for each folder pair
+	 * @param sink              The sink that receives the {@link FolderComparison} of each folder pair
 	 */
-	public List<FolderComparison> compare(List<String> folders, Set<String> excludedTypeNames) {
+	public void compare(List<String> folders, Set<String> excludedTypeNames, ComparisonSink sink) {
+		ParsedFolders parsedFolders = new ParsedFolders(folder -> releaseModels(parseFolder(folder, excludedTypeNames)), maxParsedFolders);
+		if (!deduplicate) {
+			compare(folders, 0, parsedFolders, sink);
+			return;
+		}
+		DuplicateFolders duplicates = new DuplicateFolders(folders, inMemoryFolders, parallel);
+		List<String> representatives = duplicates.getRepresentatives();
+		for (String representative : representatives) {
+			compareDuplicates(duplicates.getGroup(representative), parsedFolders, sink);
+		}
+		compare(representatives, 0, parsedFolders, new ComparisonSink() {
+			@Override
+			public void accept(FolderComparison folderComparison) {
+				ComparisonTable table = new ComparisonTable(metricScorers, strings);
+				table.accept(folderComparison);
+				accept(table);
+			}
+			
+			@Override
+			public void accept(ComparisonTable table) {
+				// Every table of compareFolderPair contains a single pair of representatives
+				if (table.size() == 0) {
+					return;
+				}
+				String representative1 = table.getFolder1(0);
+				String representative2 = table.getFolder2(0);
+				for (String folder1 : duplicates.getGroup(representative1)) {
+					for (String folder2 : duplicates.getGroup(representative2)) {
+						// The pair of representatives itself is recorded in the checkpoint by compareFolderPair
+						boolean isRepresentativePair = folder1.equals(representative1) && folder2.equals(representative2);
+						if (isRepresentativePair || checkpoint == null || !checkpoint.isCompleted(folder1, folder2)) {
+							sink.accept(DuplicateFolders.relocate(table, folder1, folder2));
+							if (!isRepresentativePair && checkpoint != null) {
+								checkpoint.markCompleted(folder1, folder2);
+							}
+						}
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Passes the comparisons of all pairs of identical folders of <code>group</code> to <code>sink</code>, where every
+	 * type of the representative (the first folder) is matched to itself with a distance of 0 for all metrics.
+	 */
+	private void compareDuplicates(List<String> group, ParsedFolders parsedFolders, ComparisonSink sink) {
+		if (group.size() < 2) {
+			return;
+		}
+		String representative = group.get(0);
+		List<Type> types = parsedFolders.get(representative);
+		double[] scores = new double[metricScorers.size()]; // All 0, shared by all type comparisons
+		for (int i = 0; i < group.size() - 1; i++) {
+			for (int j = i + 1; j < group.size(); j++) {
+				String folder1 = group.get(i);
+				String folder2 = group.get(j);
+				if (checkpoint != null && checkpoint.isCompleted(folder1, folder2)) {
+					continue;
+				}
+				// Same as in compareFolders: Cannot make a comparison without having at least one type
+				if (!types.isEmpty()) {
+					ComparisonTable table = new ComparisonTable(metricScorers, strings, types.size());
+					for (Type type : types) {
+						Path file = type.getFile().toAbsolutePath().normalize();
+						table.addRow(
+								folder1,
+								folder2,
+								DuplicateFolders.relocate(file, representative, folder1).toString(),
+								DuplicateFolders.relocate(file, representative, folder2).toString(),
+								type.getOriginalName(),
+								type.getOriginalName(),
+								scores,
+								0,
+								false
+						);
+					}
+					sink.accept(table);
+				}
+				if (checkpoint != null) {
+					checkpoint.markCompleted(folder1, folder2);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Same as {@link #compare(List, Set, ComparisonSink)} with the concatenation of <code>previousFolders</code> and
+	 * <code>newFolders</code> as list of folders, except that all pairs of two previous folders are skipped. This is
+	 * useful for adding new folders to existing results, where these pairs were already compared before: Adding
+	 * <code>k</code> new folders to <code>N</code> previous folders then only requires <code>k * N + k * (k - 1) / 2</code>
+	 * instead of <code>(N + k) * (N + k - 1) / 2</code> folder pairs to be compared.
+	 *
+	 * @param previousFolders   The list of folders whose pairs were already compared before
+	 * @param newFolders        The list of new folders that should be compared to all previous folders and to each
+	 *                          other
+	 * @param excludedTypeNames The set of type names that should be excluded from any comparison within two folders
+	 * @param sink              The sink that receives the {@link FolderComparison} of each new folder pair
+	 */
+	public void compareIncrementally(List<String> previousFolders, List<String> newFolders, Set<String> excludedTypeNames, ComparisonSink sink) {
+		List<String> folders = new ArrayList<>(previousFolders);
+		folders.addAll(newFolders);
+		compare(folders, previousFolders.size(), new ParsedFolders(folder -> releaseModels(parseFolder(folder, excludedTypeNames)), maxParsedFolders), sink);
+	}
+	
+	/**
+	 * Parses all <code>folders</code> the same way as {@link #compare(List, Set, ComparisonSink)} does and adds them to
+	 * the reference corpus in the directory <code>corpusDir</code> (which is created if it does not exist yet). Folders
+	 * that are already part of the corpus are parsed and stored again.
+	 *
+	 * @param corpusDir         The directory of the reference corpus
+	 * @param folders           The list of reference folders to add
+	 * @param excludedTypeNames The set of type names that should be excluded, which must be the same for all folders
+	 *                          of the corpus
+	 * @return The reference corpus including the added folders
+	 * @throws IOException In case reading or writing the corpus fails
+	 */
+	public ReferenceCorpus buildReferenceCorpus(Path corpusDir, List<String> folders, Set<String> excludedTypeNames) throws IOException {
+		ReferenceCorpus corpus = ReferenceCorpus.open(corpusDir, getParseSettings(excludedTypeNames));
+		try (ProgressBar pb = new ProgressBar("Building reference corpus", folders.size())) {
+			Stream<String> foldersStream = parallel ? folders.parallelStream() : folders.stream();
+			foldersStream.forEach(folder -> {
+				try {
+					corpus.add(folder, parseFolder(folder, excludedTypeNames));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				pb.step();
+			});
+		}
+		return corpus;
+	}
+	
+	/**
+	 * Opens the reference corpus in the directory <code>corpusDir</code> that was built with
+	 * {@link #buildReferenceCorpus(Path, List, Set)}.
+	 *
+	 * @param corpusDir         The directory of the reference corpus
+	 * @param excludedTypeNames The set of type names that should be excluded, which must be the same as when the corpus
+	 *                          was built
+	 * @return The opened reference corpus
+	 * @throws IOException              In case reading the corpus fails
+	 * @throws IllegalArgumentException If the corpus was built with different settings
+	 */
+	public ReferenceCorpus openReferenceCorpus(Path corpusDir, Set<String> excludedTypeNames) throws IOException {
+		return ReferenceCorpus.open(corpusDir, getParseSettings(excludedTypeNames));
+	}
+	
+	/**
+	 * Same as {@link #compareIncrementally(List, List, Set, ComparisonSink)} with all folders of <code>corpus</code>
+	 * as previous folders, i.e., <code>folders</code> are compared to each other and to all reference folders, but
+	 * the reference folders are not compared among themselves. The reference folders are not parsed but loaded from
+	 * <code>corpus</code>.
+	 *
+	 * @param folders           The list of folders that should be compared to all reference folders and to each other
+	 * @param corpus            The reference corpus, opened with {@link #openReferenceCorpus(Path, Set)}
+	 * @param excludedTypeNames The set of type names that should be excluded from any comparison within two folders
+	 * @param sink              The sink that receives the {@link FolderComparison} of each folder pair
+	 */
+	public void compareWithReferenceCorpus(List<String> folders, ReferenceCorpus corpus, Set<String> excludedTypeNames, ComparisonSink sink) {
+		if (!corpus.getSettings().equals(getParseSettings(excludedTypeNames))) {
+			throw new IllegalArgumentException("reference corpus '" + corpus.getCorpusDir() + "' was built with different settings");
+		}
+		List<String> allFolders = corpus.getFolders();
+		for (String folder : folders) {
+			if (corpus.contains(folder)) {
+				throw new IllegalArgumentException("folder '" + folder + "' is already part of reference corpus '" + corpus.getCorpusDir() + "'");
+			}
+		}
+		int firstNewFolder = allFolders.size();
+		allFolders.addAll(folders);
+		compare(allFolders, firstNewFolder, new ParsedFolders(folder -> releaseModels(corpus.contains(folder) ? corpus.load(folder) : parseFolder(folder, excludedTypeNames)), maxParsedFolders), sink);
+	}
+	
+	/**
+	 * Screens all <code>folders</code> for near-duplicate types with <code>screening</code>, which is much faster than
+	 * {@link #compare(List, Set, ComparisonSink)} for large numbers of folders, since it does not compare all folder
+	 * pairs (see {@link LSHScreening}). Instead of matching all types of two folders with the {@link TypeMatcher}, only
+	 * the candidate type pairs found by <code>screening</code> are scored with the {@link MetricScorer}s, and only
+	 * folder pairs with at least one candidate are passed to <code>sink</code>. The {@link FolderComparison}s thus
+	 * only contain the candidate type pairs, but otherwise have the same format as the ones of
+	 * {@link #compare(List, Set, ComparisonSink)}.
+	 * <p>
+	 * The {@link FingerprintIndex} and the {@link Checkpoint} are not used, and <code>folders</code> must fit into
+	 * memory (see {@link #setMaxParsedFolders(int)}, which is ignored).
+	 *
+	 * @param folders           The list of folders to screen
+	 * @param excludedTypeNames The set of type names that should be excluded from any comparison within two folders
+	 * @param screening         The screening that finds the candidate type pairs
+	 * @param sink              The sink that receives the {@link FolderComparison} of each folder pair with at least
+	 *                          one candidate
+	 */
+	public void screen(List<String> folders, Set<String> excludedTypeNames, LSHScreening screening, ComparisonSink sink) {
+		ParsedFolders parsedFolders = new ParsedFolders(folder -> releaseModels(parseFolder(folder, excludedTypeNames)), 0);
+		parsedFolders.parseAll(folders, parallel);
+		Map<Pair<String, String>, List<Pair<Type, Type>>> candidates = screening.findCandidates(folders, parsedFolders::get);
+		List<Pair<String, String>> folderPairs = new ArrayList<>(candidates.keySet());
+		if (parallel) {
+			// Same as in compare, but the cost only depends on the candidate type pairs
+			folderPairs.sort(Comparator.<Pair<String, String>>comparingLong(p -> candidates.get(p).stream()
+					.mapToLong(types -> estimateCost(List.of(types.getLeft())) * estimateCost(List.of(types.getRight())))
+					.sum()).reversed());
+		}
+		compareFolderPairs(folderPairs, p -> compareTypePairs(p.getLeft(), p.getRight(), candidates.get(p)), null, sink);
+		if (astCache != null) {
+			astCache.logStatistics();
+		}
+		if (diffCache != null) {
+			diffCache.logStatistics();
+		}
+	}
+	
+	/**
+	 * Compares all pairs of <code>folders</code> except those where both folders have an index less than
+	 * <code>firstNewFolder</code>, where the types of each folder are taken from <code>parsedFolders</code>.
+	 */
+	private void compare(List<String> folders, int firstNewFolder, ParsedFolders parsedFolders, ComparisonSink sink) {
 		List<Pair<String, String>> folderPairs = new ArrayList<>();
 		for (int i = 0; i < folders.size() - 1; i++) {
-			for (int j = i + 1; j < folders.size(); j++) {
+			for (int j = Math.max(i + 1, firstNewFolder); j < folders.size(); j++) {
 				folderPairs.add(Pair.of(folders.get(i), folders.get(j)));
 			}
 		}
+		if (fingerprintIndex != null) {
+			parsedFolders.parseAll(folders, parallel);
+			List<Pair<String, String>> selectedFolderPairs = fingerprintIndex.selectFolderPairs(folders, parsedFolders::get);
+			if (!fingerprintIndex.isRecallMode()) {
+				Set<Pair<String, String>> selected = new HashSet<>(selectedFolderPairs);
+				folderPairs = folderPairs.stream().filter(selected::contains).toList();
+			}
+		}
+		if (checkpoint != null) {
+			folderPairs = folderPairs.stream().filter(p -> !checkpoint.isCompleted(p.getLeft(), p.getRight())).toList();
+		}
+		// Only parse those folders that are actually needed (already parsed folders are not parsed again)
+		Set<String> remainingFolders = new LinkedHashSet<>();
+		folderPairs.forEach(p -> {
+			remainingFolders.add(p.getLeft());
+			remainingFolders.add(p.getRight());
+		});
+		parsedFolders.parseAll(new ArrayList<>(remainingFolders), parallel);
+		if (parsedFolders.isBounded()) {
+			// The tiled order keeps the number of re-parsed folders low, which is more important than the cost order
+			folderPairs = ParsedFolders.tileFolderPairs(folderPairs, folders, maxParsedFolders);
+		} else if (parallel) {
+			Map<String, Long> folderCosts = new HashMap<>();
+			remainingFolders.forEach(folder -> folderCosts.put(folder, estimateCost(parsedFolders.get(folder))));
+			folderPairs = new ArrayList<>(folderPairs);
+			folderPairs.sort(Comparator.<Pair<String, String>>comparingLong(p -> folderCosts.get(p.getLeft()) * folderCosts.get(p.getRight())).reversed());
+		}
+		compareFolderPairs(folderPairs, p -> compareFolders(p.getLeft(), parsedFolders.get(p.getLeft()),
+				p.getRight(), parsedFolders.get(p.getRight())), checkpoint, sink);
+		if (astCache != null) {
+			astCache.logStatistics();
+		}
+		if (diffCache != null) {
+			diffCache.logStatistics();
+		}
+		typeMatcher.logPruningStatistics();
+	}
+	
+	private static long estimateCost(List<Type> types) {
+		// At least 1, so that the cost of a pair still depends on the other folder if one folder is empty
+		return Math.max(1, types.stream().mapToLong(type -> type.getFeatures(false).getElementCount()).sum());
+	}
+	
+	/**
+	 * Computes the comparison of all <code>folderPairs</code> with <code>comparer</code> (in parallel, if enabled),
+	 * passes the results to <code>sink</code> and records them in <code>checkpoint</code> (if not <code>null</code>).
+	 */
+	private void compareFolderPairs(List<Pair<String, String>> folderPairs, Function<Pair<String, String>, ComparisonTable> comparer,
+			Checkpoint checkpoint, ComparisonSink sink) {
 		try (ProgressBar pb = new ProgressBar("Comparing folders", folderPairs.size())) {
-			Stream<Pair<String, String>> folderPairsStream = parallel ? folderPairs.parallelStream() : folderPairs.stream();
-			return folderPairsStream.map(p -> {
-				FolderComparison comparison = compareFolders(p.getLeft(), p.getRight(), excludedTypeNames);
-				pb.step();
-				return comparison;
-			}).filter(Objects::nonNull).toList();
+			if (!parallel) {
+				folderPairs.forEach(p -> compareFolderPair(p, comparer, checkpoint, sink, pb));
+				return;
+			}
+			int numThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+			ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+			try {
+				// Every thread takes the next folder pair as soon as it is done with its current one, so the folder
+				// pairs are started exactly in the specified order, and no thread is idle while pairs are left
+				AtomicInteger next = new AtomicInteger();
+				List<Future<?>> workers = new ArrayList<>(numThreads);
+				for (int i = 0; i < numThreads; i++) {
+					workers.add(pool.submit(() -> {
+						int index;
+						while ((index = next.getAndIncrement()) < folderPairs.size() && !Thread.currentThread().isInterrupted()) {
+							compareFolderPair(folderPairs.get(index), comparer, checkpoint, sink, pb);
+						}
+					}));
+				}
+				for (Future<?> worker : workers) {
+					worker.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("comparison was interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException re) {
+					throw re;
+				}
+				if (e.getCause() instanceof Error error) {
+					throw error;
+				}
+				throw new IllegalStateException(e.getCause());
+			} finally {
+				pool.shutdownNow();
+			}
 		}
 	}
 	
-	private FolderComparison compareFolders(String folder1, String folder2, Set<String> excludedTypeNames) {
-		ASTRenamer renamer1 = new ASTRenamer(folder1, excludedTypeNames, false, false);
-		ASTRenamer renamer2 = new ASTRenamer(folder2, excludedTypeNames, false, false);
-		List<Type> types1 = renamer1.getTypes();
-		List<Type> types2 = renamer2.getTypes();
-		
+	private static void compareFolderPair(Pair<String, String> p, Function<Pair<String, String>, ComparisonTable> comparer,
+			Checkpoint checkpoint, ComparisonSink sink, ProgressBar pb) {
+		ComparisonTable comparison = comparer.apply(p);
+		// Sinks do not have to be thread-safe
+		synchronized (sink) {
+			if (comparison != null) {
+				sink.accept(comparison);
+			}
+			// Only record the folder pair after the sink has received its comparison (e.g., written it to disk)
+			if (checkpoint != null) {
+				checkpoint.markCompleted(p.getLeft(), p.getRight());
+			}
+		}
+		pb.step();
+	}
+	
+	private List<Type> parseFolder(String folder, Set<String> excludedTypeNames) {
+		Map<String, String> sources = inMemoryFolders == null ? null : inMemoryFolders.get(folder);
+		if (sources != null) {
+			return new ASTRenamer(sources, excludedTypeNames, template, false, false).getTypes();
+		}
+		if (astCache == null) {
+			return new ASTRenamer(folder, excludedTypeNames, template, false, false).getTypes();
+		}
+		return astCache.load(Path.of(folder), getParseSettings(excludedTypeNames), () -> new ASTRenamer(folder, excludedTypeNames, template, false, false).getTypes());
+	}
+	
+	/**
+	 * Releases the Spoon models of all <code>types</code> if enabled (see {@link #setReleaseModels(boolean)}). This
+	 * must happen after the types were stored in the {@link ASTCache} or {@link ReferenceCorpus}, which need the models.
+	 */
+	private List<Type> releaseModels(List<Type> types) {
+		if (releaseModels) {
+			types.forEach(Type::releaseModel);
+		}
+		return types;
+	}
+	
+	/**
+	 * Returns the string that describes all settings of {@link #parseFolder(String, Set)} (see {@link ASTCache} and
+	 * {@link ReferenceCorpus}).
+	 */
+	private String getParseSettings(Set<String> excludedTypeNames) {
+		// Must contain all settings of the ASTRenamer in parseFolder (sorted set, so the string does not depend on the order)
+		String settings = String.format("keepComments=false,includeCount=false,excludedTypeNames=%s", new TreeSet<>(excludedTypeNames));
+		// The fingerprint instead of the path, so that changes of the template code are detected
+		return template == null ? settings : settings + ",template=" + template.getFingerprint();
+	}
+	
+	private ComparisonTable compareFolders(String folder1, List<Type> types1, String folder2, List<Type> types2) {
 		// Cannot make a comparison without having at least one type in each folder
 		if (types1.isEmpty() || types2.isEmpty()) {
 			return null;
 		}
 		
-		FolderComparison folderComparison = new FolderComparison(folder1, folder2);
-		for (Type type1 : types1) {
-			Type matchingType = typeMatcher.findMatchingType(type1, types2);
-			List<Pair<MetricScorer, Double>> metrics = computeMetrics(type1, matchingType);
-			folderComparison.addTypeComparison(new TypeComparison(
-					type1.original().getPosition().getCompilationUnit().getFile().toPath(),
-					matchingType.original().getPosition().getCompilationUnit().getFile().toPath(),
-					type1.getOriginalName(),
-					matchingType.getOriginalName(),
-					metrics
-			));
-		}
-		return folderComparison;
-	}
-	
-	private List<Pair<MetricScorer, Double>> computeMetrics(Type type1, Type type2) {
-		return metricScorers.stream()
-				.map(s -> Pair.of(s, s.computeComparisonScore(type1, type2)))
-				.toList();
+		ComparisonTable table = new ComparisonTable(metricScorers, strings, types1.size());
+		List<Type> matchingTypes = typeMatcher.findMatchingTypes(types1, types2);
+		for (int i = 0; i < types1.size(); i++) {
+			addTypeComparison(table, folder1, types1.get(i), folder2, matchingTypes.get(i));
+		}
+		if (diffCache != null) {
+			diffCache.evict(types1, types2);
+		}
+		return table;
+	}
+	
+	private void addTypeComparison(ComparisonTable table, String folder1, Type type1, String folder2, Type type2) {
+		// Same file format as TypeComparison, so that the rows can be converted back and forth
+		table.addRow(
+				folder1,
+				folder2,
+				type1.getFile().toAbsolutePath().normalize().toString(),
+				type2.getFile().toAbsolutePath().normalize().toString(),
+				type1.getOriginalName(),
+				type2.getOriginalName(),
+				computeScores(type1, type2),
+				0,
+				diffCache != null && diffCache.isApproximate(type1, type2)
+		);
+	}
+	
+	private ComparisonTable compareTypePairs(String folder1, String folder2, List<Pair<Type, Type>> typePairs) {
+		ComparisonTable table = new ComparisonTable(metricScorers, strings, typePairs.size());
+		for (Pair<Type, Type> typePair : typePairs) {
+			addTypeComparison(table, folder1, typePair.getLeft(), folder2, typePair.getRight());
+			if (diffCache != null) {
+				diffCache.evict(List.of(typePair.getLeft()), List.of(typePair.getRight()));
+			}
+		}
+		return table;
+	}
+	
+	private double[] computeScores(Type type1, Type type2) {
+		double[] scores = new double[metricScorers.size()];
+		if (earlyExitDetection == null) {
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] = metricScorers.get(i).computeComparisonScore(type1, type2);
+			}
+			return scores;
+		}
+		Arrays.fill(scores, Double.NaN);
+		for (int i : metricOrder) {
+			scores[i] = metricScorers.get(i).computeComparisonScore(type1, type2);
+			if (!earlyExitDetection.canBePlagiarism(metricScorers, scores, 0)) {
+				break;
+			}
+		}
+		return scores;
+	}
+	
+	/**
+	 * Returns whether the metrics cheaper than a tree diff do not rule out that <code>type1</code> and
+	 * <code>type2</code> are detected as plagiarism by the {@link #earlyExitDetection}.
+	 */
+	private boolean canBePlagiarismCheaply(Type type1, Type type2) {
+		double[] scores = new double[metricScorers.size()];
+		Arrays.fill(scores, Double.NaN);
+		for (int i : metricOrder) {
+			if (metricScorers.get(i).getCost() >= MetricScorer.COST_TREE_DIFF) {
+				break;
+			}
+			scores[i] = metricScorers.get(i).computeComparisonScore(type1, type2);
+			if (!earlyExitDetection.canBePlagiarism(metricScorers, scores, 0)) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 }
@@ -0,0 +1,94 @@
+package comparison;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Consumer of {@link FolderComparison}s that receives each comparison as soon as it is computed (see
+ * {@link Comparer#compare(List, java.util.Set, ComparisonSink)}), so that the comparisons do not have to be kept in
+ * memory until all of them are computed.
+ * <p>
+ * {@link Comparer} passes its comparisons in columnar form (see {@link #accept(ComparisonTable)}), so sinks that
+ * process many comparisons should override this method and read the columns directly instead of the reconstructed
+ * {@link FolderComparison}s.
+ * <p>
+ * {@link Comparer} never calls {@link #accept(FolderComparison)} concurrently, so implementations do not have to be
+ * thread-safe. However, in parallel mode, the calls can come from different threads and in any order.
+ */
+@FunctionalInterface
+public interface ComparisonSink extends AutoCloseable {
+	
+	/**
+	 * Consumes the specified <code>folderComparison</code>. Implementations must not change it.
+	 *
+	 * @param folderComparison The comparison to consume
+	 */
+	void accept(FolderComparison folderComparison);
+	
+	/**
+	 * Consumes all rows of the specified <code>table</code>, where all rows of the same folder pair are consecutive.
+	 * By default, the {@link FolderComparison}s are reconstructed from the rows and passed to
+	 * {@link #accept(FolderComparison)} (see {@link ComparisonTable#forEachFolderComparison(ComparisonSink)}).
+	 * Implementations must not change the table.
+	 *
+	 * @param table The comparisons to consume
+	 */
+	default void accept(ComparisonTable table) {
+		table.forEachFolderComparison(this);
+	}
+	
+	/**
+	 * Releases any resources of this sink (e.g., flushes and closes output files). By default, this does nothing.
+	 *
+	 * @throws IOException In case any of the IO operations fail
+	 */
+	@Override
+	default void close() throws IOException {
+	}
+	
+	/**
+	 * Returns a sink that forwards every comparison to all specified <code>sinks</code> (in the given order). Closing
+	 * the returned sink closes all <code>sinks</code>.
+	 *
+	 * @param sinks The sinks to forward to
+	 * @return A sink that forwards to all <code>sinks</code>
+	 */
+	static ComparisonSink of(List<ComparisonSink> sinks) {
+		return new ComparisonSink() {
+			@Override
+			public void accept(FolderComparison folderComparison) {
+				for (ComparisonSink sink : sinks) {
+					sink.accept(folderComparison);
+				}
+			}
+			
+			@Override
+			public void accept(ComparisonTable table) {
+				for (ComparisonSink sink : sinks) {
+					sink.accept(table);
+				}
+			}
+			
+			@Override
+			public void close() throws IOException {
+				IOException exception = null;
+				// Close all sinks even if some of them fail
+				for (ComparisonSink sink : sinks) {
+					try {
+						sink.close();
+					} catch (IOException e) {
+						if (exception == null) {
+							exception = e;
+						} else {
+							exception.addSuppressed(e);
+						}
+					}
+				}
+				if (exception != null) {
+					throw exception;
+				}
+			}
+		};
+	}
+	
+}
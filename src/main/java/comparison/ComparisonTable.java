@@ -0,0 +1,294 @@
+package comparison;
+
+import comparison.scoring.metrics.MetricScorer;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Compact, columnar store of {@link TypeComparison}s, which is a sink that keeps all received
+ * {@link FolderComparison}s in memory (see {@link Comparer#compareToTable(List, Set)}) without the per-comparison
+ * object graphs. {@link Comparer} computes the comparisons of every folder pair directly into such a table, which is
+ * then passed to the sinks (see {@link ComparisonSink#accept(ComparisonTable)}). Every row is a single type
+ * comparison, where the folders, files and type names are stored as IDs of a {@link StringDictionary}, which is shared
+ * by all tables of a {@link Comparer} (see {@link Comparer#getStrings()}), and the scores of all rows are stored in a
+ * single <code>double</code> array (row-major, i.e., the scores of row <code>r</code> start at index
+ * <code>r * getMetricScorers().size()</code>, see {@link #getScores()}).
+ * The column order of the scores is the order of the {@link MetricScorer}s that are passed to the constructor, which
+ * should be the ones of the {@link Comparer} (see {@link Comparer#getMetricScorers()}).
+ * <p>
+ * All rows of a {@link FolderComparison} are stored consecutively, so the {@link FolderComparison}s can be
+ * reconstructed if needed (see {@link #forEachFolderComparison(ComparisonSink)}).
+ */
+public class ComparisonTable implements ComparisonSink {
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private final List<MetricScorer> metricScorers;
+	private final int numMetrics;
+	private final StringDictionary strings;
+	private int size;
+	private int[] folders1;
+	private int[] folders2;
+	private int[] files1;
+	private int[] files2;
+	private int[] types1;
+	private int[] types2;
+	private double[] scores;
+	private final BitSet approximate;
+	
+	/**
+	 * Creates a new, empty table with its own {@link StringDictionary}.
+	 *
+	 * @param metricScorers The {@link MetricScorer}s that define the order of the score columns
+	 */
+	public ComparisonTable(List<MetricScorer> metricScorers) {
+		this(metricScorers, new StringDictionary());
+	}
+	
+	/**
+	 * Creates a new, empty table that stores its strings in <code>strings</code>.
+	 *
+	 * @param metricScorers The {@link MetricScorer}s that define the order of the score columns
+	 * @param strings       The dictionary of the folders, files and type names, which may be shared with other tables
+	 */
+	public ComparisonTable(List<MetricScorer> metricScorers, StringDictionary strings) {
+		this(metricScorers, strings, INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new, empty table with space for <code>initialCapacity</code> rows (e.g., for the known number of type
+	 * comparisons of a single folder pair). The table still grows beyond this capacity if necessary.
+	 *
+	 * @param metricScorers   The {@link MetricScorer}s that define the order of the score columns
+	 * @param strings         The dictionary of the folders, files and type names, which may be shared with other
+	 *                        tables
+	 * @param initialCapacity The number of rows to allocate upfront
+	 */
+	public ComparisonTable(List<MetricScorer> metricScorers, StringDictionary strings, int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity must not be negative");
+		}
+		this.metricScorers = List.copyOf(metricScorers);
+		numMetrics = metricScorers.size();
+		this.strings = strings;
+		size = 0;
+		folders1 = new int[initialCapacity];
+		folders2 = new int[initialCapacity];
+		files1 = new int[initialCapacity];
+		files2 = new int[initialCapacity];
+		types1 = new int[initialCapacity];
+		types2 = new int[initialCapacity];
+		scores = new double[initialCapacity * numMetrics];
+		approximate = new BitSet();
+	}
+	
+	/**
+	 * Adds all {@link TypeComparison}s of <code>folderComparison</code> as rows.
+	 *
+	 * @param folderComparison The comparison to add
+	 * @throws IllegalArgumentException If the metric scorers of any {@link TypeComparison} are not the same as the
+	 *                                  ones of this table
+	 */
+	@Override
+	public void accept(FolderComparison folderComparison) {
+		for (TypeComparison tc : folderComparison.getTypeComparisons()) {
+			if (!tc.getMetricScorers().equals(metricScorers)) {
+				throw new IllegalArgumentException("metric scorers of the type comparison do not match the table columns");
+			}
+			addRow(folderComparison.getFolder1(), folderComparison.getFolder2(), tc.getFile1().toString(),
+					tc.getFile2().toString(), tc.getType1(), tc.getType2(), tc.getScores(), 0, tc.isApproximate());
+		}
+	}
+	
+	/**
+	 * Adds all rows of <code>table</code> (in the same order). If both tables share the same {@link StringDictionary},
+	 * the IDs are copied without looking up the strings again.
+	 *
+	 * @param table The table whose rows to add
+	 * @throws IllegalArgumentException If the metric scorers of <code>table</code> are not the same as the ones of
+	 *                                  this table
+	 */
+	@Override
+	public void accept(ComparisonTable table) {
+		if (!table.getMetricScorers().equals(metricScorers)) {
+			throw new IllegalArgumentException("metric scorers of the table do not match the table columns");
+		}
+		ensureCapacity(size + table.size());
+		if (table.strings == strings) {
+			System.arraycopy(table.folders1, 0, folders1, size, table.size());
+			System.arraycopy(table.folders2, 0, folders2, size, table.size());
+			System.arraycopy(table.files1, 0, files1, size, table.size());
+			System.arraycopy(table.files2, 0, files2, size, table.size());
+			System.arraycopy(table.types1, 0, types1, size, table.size());
+			System.arraycopy(table.types2, 0, types2, size, table.size());
+			System.arraycopy(table.scores, 0, scores, size * numMetrics, table.size() * numMetrics);
+			for (int row = 0; row < table.size(); row++) {
+				approximate.set(size + row, table.approximate.get(row));
+			}
+			size += table.size();
+			return;
+		}
+		for (int row = 0; row < table.size(); row++) {
+			addRow(table.getFolder1(row), table.getFolder2(row), table.getFile1(row), table.getFile2(row),
+					table.getType1(row), table.getType2(row), table.getScores(), row * numMetrics, table.isApproximate(row));
+		}
+	}
+	
+	/**
+	 * Adds a single row.
+	 *
+	 * @param folder1     The first folder
+	 * @param folder2     The second folder
+	 * @param file1       The file that contains <code>type1</code>
+	 * @param file2       The file that contains <code>type2</code>
+	 * @param type1       The name of the first type
+	 * @param type2       The name of the second type
+	 * @param scores      The array that contains the scores of the row (in the column order of this table)
+	 * @param offset      The index of the first score of the row in <code>scores</code>
+	 * @param approximate Whether any score is based on an approximated diff
+	 */
+	public void addRow(String folder1, String folder2, String file1, String file2, String type1, String type2,
+			double[] scores, int offset, boolean approximate) {
+		ensureCapacity(size + 1);
+		folders1[size] = strings.intern(folder1);
+		folders2[size] = strings.intern(folder2);
+		files1[size] = strings.intern(file1);
+		files2[size] = strings.intern(file2);
+		types1[size] = strings.intern(type1);
+		types2[size] = strings.intern(type2);
+		System.arraycopy(scores, offset, this.scores, size * numMetrics, numMetrics);
+		this.approximate.set(size, approximate);
+		size++;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (capacity <= folders1.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, folders1.length * 2);
+		folders1 = Arrays.copyOf(folders1, newCapacity);
+		folders2 = Arrays.copyOf(folders2, newCapacity);
+		files1 = Arrays.copyOf(files1, newCapacity);
+		files2 = Arrays.copyOf(files2, newCapacity);
+		types1 = Arrays.copyOf(types1, newCapacity);
+		types2 = Arrays.copyOf(types2, newCapacity);
+		scores = Arrays.copyOf(scores, newCapacity * numMetrics);
+	}
+	
+	public List<MetricScorer> getMetricScorers() {
+		return metricScorers;
+	}
+	
+	public StringDictionary getStrings() {
+		return strings;
+	}
+	
+	/**
+	 * Returns the number of rows, i.e., the number of type comparisons.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public String getFolder1(int row) {
+		return strings.get(folders1[checkRow(row)]);
+	}
+	
+	public String getFolder2(int row) {
+		return strings.get(folders2[checkRow(row)]);
+	}
+	
+	public String getFile1(int row) {
+		return strings.get(files1[checkRow(row)]);
+	}
+	
+	public String getFile2(int row) {
+		return strings.get(files2[checkRow(row)]);
+	}
+	
+	public String getType1(int row) {
+		return strings.get(types1[checkRow(row)]);
+	}
+	
+	public String getType2(int row) {
+		return strings.get(types2[checkRow(row)]);
+	}
+	
+	public double getScore(int row, int column) {
+		Objects.checkIndex(column, numMetrics);
+		return scores[checkRow(row) * numMetrics + column];
+	}
+	
+	/**
+	 * Returns the scores of all rows (row-major), where the scores of row <code>r</code> start at index
+	 * <code>r * getMetricScorers().size()</code>. The returned array is not copied, so it must not be modified, and
+	 * it might be longer than needed for the current rows. It is replaced when rows are added beyond its capacity.
+	 */
+	public double[] getScores() {
+		return scores;
+	}
+	
+	public boolean isApproximate(int row) {
+		return approximate.get(checkRow(row));
+	}
+	
+	private int checkRow(int row) {
+		return Objects.checkIndex(row, size);
+	}
+	
+	/**
+	 * Returns a new table with all rows that satisfy <code>rowPredicate</code> (in the same order).
+	 *
+	 * @param rowPredicate The predicate that receives the row index
+	 * @return A new table with the selected rows
+	 */
+	public ComparisonTable filter(IntPredicate rowPredicate) {
+		ComparisonTable filtered = new ComparisonTable(metricScorers, strings);
+		for (int row = 0; row < size; row++) {
+			if (rowPredicate.test(row)) {
+				filtered.addRow(getFolder1(row), getFolder2(row), getFile1(row), getFile2(row), getType1(row),
+						getType2(row), scores, row * numMetrics, isApproximate(row));
+			}
+		}
+		return filtered;
+	}
+	
+	/**
+	 * Returns all distinct folder pairs in the order of their first row.
+	 */
+	public List<Pair<String, String>> getFolderPairs() {
+		Set<Pair<String, String>> folderPairs = new LinkedHashSet<>();
+		for (int row = 0; row < size; row++) {
+			folderPairs.add(Pair.of(getFolder1(row), getFolder2(row)));
+		}
+		return new ArrayList<>(folderPairs);
+	}
+	
+	/**
+	 * Reconstructs the {@link FolderComparison}s of all rows and passes them to <code>sink</code>, where all
+	 * consecutive rows with the same two folders form a single {@link FolderComparison}.
+	 *
+	 * @param sink The sink that receives the {@link FolderComparison}s
+	 */
+	public void forEachFolderComparison(ComparisonSink sink) {
+		FolderComparison current = null;
+		for (int row = 0; row < size; row++) {
+			if (current == null || folders1[row] != folders1[row - 1] || folders2[row] != folders2[row - 1]) {
+				if (current != null) {
+					sink.accept(current);
+				}
+				current = new FolderComparison(getFolder1(row), getFolder2(row));
+			}
+			current.addTypeComparison(new TypeComparison(Path.of(getFile1(row)), Path.of(getFile2(row)),
+					getType1(row), getType2(row), metricScorers,
+					Arrays.copyOfRange(scores, row * numMetrics, (row + 1) * numMetrics), isApproximate(row)));
+		}
+		if (current != null) {
+			sink.accept(current);
+		}
+	}
+	
+}
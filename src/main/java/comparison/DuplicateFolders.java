@@ -0,0 +1,154 @@
+package comparison;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Hashing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Groups of folders with identical source files (see {@link Comparer#setDeduplicate(boolean)}), so that only one
+ * representative of each group has to be parsed and compared.
+ * <p>
+ * Every Java source file (<code>.java</code>) is hashed after normalizing its source code, i.e., after unifying line
+ * separators and removing trailing whitespace and blank lines, so that files that only differ in formatting of this
+ * kind are treated as identical. The hash of a folder is then computed from the relative paths and hashes of all its
+ * source files. Folders with the same hash form a group, whose representative is the first folder of the group in
+ * the original order. Since the relative paths are part of the hash, each source file of a folder has a counterpart
+ * with the same relative path in every other folder of its group (see {@link #relocate(ComparisonTable, String, String)}).
+ */
+class DuplicateFolders {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(DuplicateFolders.class);
+	
+	private final Map<String, List<String>> groups;
+	
+	/**
+	 * Hashes all <code>folders</code> and groups them by their hashes. Folders whose source files cannot be read are
+	 * treated as unique.
+	 *
+	 * @param folders         The list of folders
+	 * @param inMemoryFolders The source files of in-memory folders (see {@link Comparer#setInMemoryFolders(Map)}), or
+	 *                        <code>null</code> if all folders are on disk
+	 * @param parallel        Whether to hash the folders in parallel
+	 */
+	DuplicateFolders(List<String> folders, Map<String, Map<String, String>> inMemoryFolders, boolean parallel) {
+		Map<String, String> hashes = new ConcurrentHashMap<>();
+		Stream<String> foldersStream = parallel ? folders.parallelStream() : folders.stream();
+		foldersStream.forEach(folder -> {
+			Map<String, String> sources = inMemoryFolders == null ? null : inMemoryFolders.get(folder);
+			try {
+				hashes.put(folder, sources != null ? hashFolder(folder, sources) : hashFolder(folder));
+			} catch (IOException | UncheckedIOException e) {
+				LOGGER.warn("could not hash folder '{}', treating it as unique: {}", folder, e.getMessage(), e);
+				hashes.put(folder, folder);
+			}
+		});
+		// Linked maps, so that the groups (and the folders within them) keep the original order
+		Map<String, List<String>> byHash = new LinkedHashMap<>();
+		for (String folder : folders) {
+			byHash.computeIfAbsent(hashes.get(folder), h -> new ArrayList<>()).add(folder);
+		}
+		groups = new LinkedHashMap<>();
+		byHash.values().forEach(group -> groups.put(group.get(0), Collections.unmodifiableList(group)));
+		LOGGER.info("deduplication reduced {} folders to {} distinct folders", folders.size(), groups.size());
+	}
+	
+	/**
+	 * Returns the representatives of all groups in the original order of the folders.
+	 */
+	List<String> getRepresentatives() {
+		return new ArrayList<>(groups.keySet());
+	}
+	
+	/**
+	 * Returns all folders of the group of <code>representative</code>, starting with <code>representative</code>
+	 * itself.
+	 */
+	List<String> getGroup(String representative) {
+		return groups.get(representative);
+	}
+	
+	/**
+	 * Returns a copy of <code>comparison</code> (of two representatives, i.e., all rows have the same two folders) for
+	 * the folders <code>folder1</code> and <code>folder2</code>, which must be duplicates of the first and second
+	 * folder of <code>comparison</code>, respectively. The files of all rows are replaced by their counterparts in the
+	 * new folders.
+	 *
+	 * @param comparison The comparison of two representatives
+	 * @param folder1    The duplicate of the first folder of <code>comparison</code>
+	 * @param folder2    The duplicate of the second folder of <code>comparison</code>
+	 * @return The comparison of <code>folder1</code> and <code>folder2</code>
+	 */
+	static ComparisonTable relocate(ComparisonTable comparison, String folder1, String folder2) {
+		ComparisonTable relocated = new ComparisonTable(comparison.getMetricScorers(), comparison.getStrings(),
+				comparison.size());
+		int numMetrics = comparison.getMetricScorers().size();
+		for (int row = 0; row < comparison.size(); row++) {
+			relocated.addRow(
+					folder1,
+					folder2,
+					relocate(Path.of(comparison.getFile1(row)), comparison.getFolder1(row), folder1).toString(),
+					relocate(Path.of(comparison.getFile2(row)), comparison.getFolder2(row), folder2).toString(),
+					comparison.getType1(row),
+					comparison.getType2(row),
+					comparison.getScores(),
+					row * numMetrics,
+					comparison.isApproximate(row)
+			);
+		}
+		return relocated;
+	}
+	
+	static Path relocate(Path file, String fromFolder, String toFolder) {
+		Path from = Path.of(fromFolder).toAbsolutePath().normalize();
+		if (!file.startsWith(from)) {
+			return file;
+		}
+		return Path.of(toFolder).toAbsolutePath().normalize().resolve(from.relativize(file));
+	}
+	
+	private static String hashFolder(String folder) throws IOException {
+		Path folderPath = Path.of(folder);
+		Map<String, String> fileHashes = new TreeMap<>();
+		try (Stream<Path> files = Files.walk(folderPath)) {
+			for (Path file : files.filter(Files::isRegularFile).filter(f -> f.toString().endsWith(".java")).toList()) {
+				String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+				fileHashes.put(folderPath.relativize(file).toString(), Hashing.sha256(normalize(source)));
+			}
+		}
+		return hashFileHashes(fileHashes);
+	}
+	
+	private static String hashFolder(String folder, Map<String, String> sources) {
+		Path folderPath = Path.of(folder);
+		Map<String, String> fileHashes = new TreeMap<>();
+		sources.forEach((file, source) -> fileHashes.put(folderPath.relativize(Path.of(file)).toString(), Hashing.sha256(normalize(source))));
+		return hashFileHashes(fileHashes);
+	}
+	
+	/**
+	 * Returns the hash of all relative file paths and hashes of a folder, which must be sorted by path.
+	 */
+	private static String hashFileHashes(Map<String, String> fileHashes) {
+		return Hashing.sha256(fileHashes.entrySet().stream()
+				.map(e -> e.getKey() + "\n" + e.getValue() + "\n")
+				.collect(Collectors.joining()));
+	}
+	
+	private static String normalize(String source) {
+		return source.lines()
+				.map(String::stripTrailing)
+				.filter(line -> !line.isEmpty())
+				.collect(Collectors.joining("\n"));
+	}
+	
+}
@@ -0,0 +1,225 @@
+package comparison;
+
+import ast.Type;
+import me.tongfei.progressbar.ProgressBar;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Hashing;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Index of structural fingerprints that is used to select only those folder pairs for the (expensive) full comparison
+ * that share enough fingerprints, instead of comparing all possible folder pairs.
+ * <p>
+ * The fingerprints of a folder are computed by winnowing (Schleimer et al., "Winnowing: Local Algorithms for Document
+ * Fingerprinting", 2003) the hashes of all k-grams of the renamed node kind sequences of its types (see
+ * {@link ast.TypeFeatures#getNodeKinds()}). All fingerprints are then stored in an inverted index (fingerprint to
+ * folders), which allows to find all folders sharing fingerprints without looking at every folder pair. The similarity
+ * of two folders is the number of shared fingerprints divided by the number of fingerprints of the smaller folder, and
+ * only folder pairs with a similarity of at least the cutoff are selected.
+ * <p>
+ * Fingerprints that occur in too many folders (e.g., because they stem from template code that all submissions share)
+ * carry no information about plagiarism, but they make the index quadratic again, so they are ignored.
+ * <p>
+ * To tune the cutoff, the index can be used in recall mode (see {@link #setRecallMode(boolean)}), where all folder
+ * pairs are still compared, and the selection is then evaluated against the exhaustive results (see
+ * {@link #logRecallReport(List)}).
+ */
+public class FingerprintIndex {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintIndex.class);
+	
+	private final int k;
+	private final int window;
+	private final double cutoff;
+	private final double maxFolderFraction;
+	private boolean recallMode;
+	/**
+	 * The similarities of all folder pairs that share at least one fingerprint (recall mode) or of all selected folder
+	 * pairs (otherwise), as computed by the last call of {@link #selectFolderPairs(List, Function)}.
+	 */
+	private final Map<Pair<String, String>, Double> similarities;
+	private long lastPossiblePairs;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param k                 The number of consecutive node kinds that are hashed together (k-gram)
+	 * @param window            The number of consecutive k-gram hashes out of which one is selected as fingerprint.
+	 *                          Any match of at least <code>window + k - 1</code> node kinds is guaranteed to share a
+	 *                          fingerprint
+	 * @param cutoff            The minimum similarity (in the range [0, 1]) of two folders to be selected
+	 * @param maxFolderFraction The maximum fraction (in the range (0, 1]) of all folders a fingerprint may occur in.
+	 *                          More frequent fingerprints are ignored
+	 */
+	public FingerprintIndex(int k, int window, double cutoff, double maxFolderFraction) {
+		if (k < 1 || window < 1) {
+			throw new IllegalArgumentException("k and window must be at least 1");
+		}
+		this.k = k;
+		this.window = window;
+		this.cutoff = cutoff;
+		this.maxFolderFraction = maxFolderFraction;
+		recallMode = false;
+		similarities = new HashMap<>();
+		lastPossiblePairs = 0;
+	}
+	
+	public boolean isRecallMode() {
+		return recallMode;
+	}
+	
+	/**
+	 * Sets whether to use the recall mode, where {@link Comparer} still compares all folder pairs instead of only the
+	 * selected ones. This allows to evaluate the selection against the exhaustive results afterward (see
+	 * {@link #logRecallReport(List)}).
+	 *
+	 * @param recallMode Whether to use the recall mode
+	 */
+	public void setRecallMode(boolean recallMode) {
+		this.recallMode = recallMode;
+	}
+	
+	/**
+	 * Selects all pairs of <code>folders</code> that share enough fingerprints. The pairs are returned in the same
+	 * order as all possible pairs would be created (see {@link Comparer#compare(List, java.util.Set)}).
+	 *
+	 * @param folders The list of folders out of which the pairs are selected
+	 * @param types   The function that returns the parsed types of a folder
+	 * @return The selected folder pairs
+	 */
+	public List<Pair<String, String>> selectFolderPairs(List<String> folders, Function<String, List<Type>> types) {
+		List<long[]> fingerprints = new ArrayList<>(folders.size());
+		try (ProgressBar pb = new ProgressBar("Fingerprinting folders", folders.size())) {
+			for (String folder : folders) {
+				fingerprints.add(computeFingerprints(types.apply(folder)));
+				pb.step();
+			}
+		}
+		
+		Map<Long, List<Integer>> index = new HashMap<>();
+		for (int i = 0; i < fingerprints.size(); i++) {
+			for (long fingerprint : fingerprints.get(i)) {
+				index.computeIfAbsent(fingerprint, x -> new ArrayList<>()).add(i);
+			}
+		}
+		int maxFolders = Math.max(2, (int) (maxFolderFraction * folders.size()));
+		long ignored = index.values().stream().filter(postings -> postings.size() > maxFolders).count();
+		
+		similarities.clear();
+		lastPossiblePairs = (long) folders.size() * (folders.size() - 1) / 2;
+		List<Pair<String, String>> selected = new ArrayList<>();
+		for (int i = 0; i < fingerprints.size(); i++) {
+			// Count the shared fingerprints with all folders that come after folder i (each pair only once)
+			Map<Integer, Integer> shared = new TreeMap<>();
+			for (long fingerprint : fingerprints.get(i)) {
+				List<Integer> postings = index.get(fingerprint);
+				if (postings.size() > maxFolders) {
+					continue;
+				}
+				for (int j : postings) {
+					if (j > i) {
+						shared.merge(j, 1, Integer::sum);
+					}
+				}
+			}
+			for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+				int j = entry.getKey();
+				double similarity = (double) entry.getValue() / Math.min(fingerprints.get(i).length, fingerprints.get(j).length);
+				Pair<String, String> pair = Pair.of(folders.get(i), folders.get(j));
+				if (similarity >= cutoff) {
+					selected.add(pair);
+				}
+				if (similarity >= cutoff || recallMode) {
+					similarities.put(pair, similarity);
+				}
+			}
+		}
+		LOGGER.info("fingerprint index selected {} of {} folder pairs ({} fingerprints, {} ignored as too frequent)",
+				selected.size(), lastPossiblePairs, index.size(), ignored);
+		return selected;
+	}
+	
+	/**
+	 * Logs how many of the specified <code>detected</code> folder pairs (typically, those that were detected as
+	 * plagiarism when comparing all folder pairs in recall mode) would have been selected by the last call of
+	 * {@link #selectFolderPairs(List, Function)}. Additionally, the minimum similarity of all detected folder pairs is
+	 * logged, which is the largest cutoff that would still select all of them.
+	 *
+	 * @param detected The detected type comparisons, whose folder pairs should have been selected
+	 */
+	public void logRecallReport(ComparisonTable detected) {
+		logRecallReport(detected.getFolderPairs());
+	}
+	
+	/**
+	 * Same as {@link #logRecallReport(ComparisonTable)}, but with the detected folder pairs given directly.
+	 *
+	 * @param detected The folder pairs where plagiarism was detected
+	 */
+	public void logRecallReport(List<Pair<String, String>> detected) {
+		int found = 0;
+		double minSimilarity = Double.POSITIVE_INFINITY;
+		for (Pair<String, String> p : detected) {
+			double similarity = similarities.getOrDefault(p, 0.0);
+			minSimilarity = Math.min(minSimilarity, similarity);
+			if (similarity >= cutoff) {
+				found++;
+			} else {
+				LOGGER.debug("fingerprint index missed folder pair '{}', '{}' (similarity {})", p.getLeft(), p.getRight(), similarity);
+			}
+		}
+		long selected = similarities.values().stream().filter(similarity -> similarity >= cutoff).count();
+		LOGGER.info("fingerprint index recall at cutoff {}: {} of {} detected folder pairs ({}%), selecting {} of {} folder pairs",
+				cutoff, found, detected.size(), detected.isEmpty() ? 100 : String.format("%.2f", 100.0 * found / detected.size()),
+				selected, lastPossiblePairs);
+		if (!detected.isEmpty()) {
+			LOGGER.info("fingerprint index: the largest cutoff with full recall is {}", minSimilarity);
+		}
+	}
+	
+	/**
+	 * Returns the sorted, distinct fingerprints of all <code>types</code>.
+	 */
+	long[] computeFingerprints(List<Type> types) {
+		Set<Long> fingerprints = new HashSet<>();
+		for (Type type : types) {
+			winnow(hashKGrams(type.getFeatures(true).getNodeKinds()), fingerprints);
+		}
+		return fingerprints.stream().mapToLong(x -> x).sorted().toArray();
+	}
+	
+	private long[] hashKGrams(int[] nodeKinds) {
+		// Sequences shorter than k are hashed as a whole, so that every type has at least one fingerprint
+		int n = Math.max(1, nodeKinds.length - k + 1);
+		int length = Math.min(k, nodeKinds.length);
+		long[] hashes = new long[n];
+		// Rolling hash, mixed since winnowing selects minimum hashes
+		long highestPower = Hashing.highestPower(length);
+		long hash = Hashing.hash(nodeKinds, 0, length);
+		hashes[0] = Hashing.mix(hash);
+		for (int i = 1; i < n; i++) {
+			hash = Hashing.roll(hash, nodeKinds[i - 1], nodeKinds[i + length - 1], highestPower);
+			hashes[i] = Hashing.mix(hash);
+		}
+		return hashes;
+	}
+	
+	private void winnow(long[] hashes, Set<Long> fingerprints) {
+		int w = Math.min(window, hashes.length);
+		for (int start = 0; start + w <= hashes.length; start++) {
+			// Select the minimum hash of the window (the rightmost one in case of ties)
+			int min = start;
+			for (int i = start + 1; i < start + w; i++) {
+				if (hashes[i] <= hashes[min]) {
+					min = i;
+				}
+			}
+			fingerprints.add(hashes[min]);
+		}
+	}
+	
+}
@@ -0,0 +1,197 @@
+package comparison;
+
+import ast.Type;
+import me.tongfei.progressbar.ProgressBar;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Hashing;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Screening of near-duplicate types for quick triage of very large numbers of folders, which finds candidate pairs of
+ * types directly instead of comparing all folder pairs (see {@link Comparer#screen(List, Set, LSHScreening, ComparisonSink)}).
+ * <p>
+ * Every type is represented by the set of its shingles, which are the n-grams of its renamed token sequence (see
+ * {@link ast.TypeFeatures#getTokens()}). For each type, a MinHash signature of <code>bands * rows</code> values is
+ * computed, where each value is the minimum hash of all shingles under another hash function. The probability that
+ * two types have the same value at some position equals the Jaccard similarity of their shingle sets. With
+ * locality-sensitive hashing, the signatures are split into <code>bands</code> bands of <code>rows</code> values, and
+ * all types that have the same values in at least one band end up in the same bucket. Types of different folders that
+ * share a bucket are candidates, which are then only kept if their similarity (estimated from the full signatures) is
+ * at least the minimum similarity. A pair of types with a Jaccard similarity <code>s</code> becomes a candidate with
+ * probability <code>1 - (1 - s^rows)^bands</code>, so the (soft) threshold is roughly
+ * <code>(1 / bands)^(1 / rows)</code>.
+ * <p>
+ * The time is linear in the total size of all types plus the number of candidates. Buckets with more than a maximum
+ * number of types (e.g., because all folders contain the same template type) are ignored. Since every type is in
+ * exactly one bucket per band, each type is paired with at most <code>bands * (maxBucketSize - 1)</code> other types,
+ * i.e., the number of candidates grows linearly with the number of types. Types that are near-duplicates in more folders than the maximum
+ * bucket size are only found if they share another (smaller) bucket.
+ */
+public class LSHScreening {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(LSHScreening.class);
+	
+	private final int shingleLength;
+	private final int bands;
+	private final int rows;
+	private final double minSimilarity;
+	private final int maxBucketSize;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param shingleLength     The number of consecutive tokens of a shingle
+	 * @param bands             The number of bands of the signatures
+	 * @param rows              The number of signature values per band
+	 * @param minSimilarity     The minimum estimated Jaccard similarity (in the range [0, 1]) of two types to be
+	 *                          selected as candidates
+	 * @param maxBucketSize     The maximum number of types of a single bucket (at least 2). Larger buckets are ignored
+	 */
+	public LSHScreening(int shingleLength, int bands, int rows, double minSimilarity, int maxBucketSize) {
+		if (shingleLength < 1 || bands < 1 || rows < 1) {
+			throw new IllegalArgumentException("shingleLength, bands and rows must be at least 1");
+		}
+		if (maxBucketSize < 2) {
+			throw new IllegalArgumentException("maxBucketSize must be at least 2");
+		}
+		this.shingleLength = shingleLength;
+		this.bands = bands;
+		this.rows = rows;
+		this.minSimilarity = minSimilarity;
+		this.maxBucketSize = maxBucketSize;
+	}
+	
+	/**
+	 * Finds all candidate pairs of types of different <code>folders</code>. The result maps each folder pair that has
+	 * at least one candidate to the list of its candidate type pairs, where the folder pairs are in the same order as
+	 * all possible pairs would be created (see {@link Comparer#compare(List, Set)}), and the first type of each type
+	 * pair belongs to the first folder.
+	 *
+	 * @param folders The list of folders
+	 * @param types   The function that returns the parsed types of a folder
+	 * @return The candidate type pairs of all folder pairs with at least one candidate
+	 */
+	public Map<Pair<String, String>, List<Pair<Type, Type>>> findCandidates(List<String> folders, Function<String, List<Type>> types) {
+		List<List<Type>> folderTypes = new ArrayList<>(folders.size());
+		List<List<long[]>> signatures = new ArrayList<>(folders.size());
+		try (ProgressBar pb = new ProgressBar("Computing signatures", folders.size())) {
+			for (String folder : folders) {
+				List<Type> ts = types.apply(folder);
+				folderTypes.add(ts);
+				signatures.add(ts.stream().map(this::computeSignature).toList());
+				pb.step();
+			}
+		}
+		
+		// Each bucket entry is a type, encoded as folder index (upper 32 bits) and type index (lower 32 bits)
+		Set<Candidate> candidates = new HashSet<>();
+		long ignoredBuckets = 0;
+		for (int band = 0; band < bands; band++) {
+			Map<Long, List<Long>> buckets = new HashMap<>();
+			for (int i = 0; i < folders.size(); i++) {
+				for (int t = 0; t < signatures.get(i).size(); t++) {
+					long bucket = hashBand(signatures.get(i).get(t), band);
+					buckets.computeIfAbsent(bucket, x -> new ArrayList<>()).add(((long) i << 32) | t);
+				}
+			}
+			for (List<Long> bucket : buckets.values()) {
+				if (bucket.size() < 2) {
+					continue;
+				}
+				if (bucket.size() > maxBucketSize) {
+					ignoredBuckets++;
+					continue;
+				}
+				addCandidates(bucket, signatures, candidates);
+			}
+		}
+		
+		// Sort the candidates by folder pair (in the order of all possible pairs) and then by types
+		List<Candidate> sorted = new ArrayList<>(candidates);
+		sorted.sort(Comparator.comparingInt(Candidate::folder1)
+				.thenComparingInt(Candidate::folder2)
+				.thenComparingInt(Candidate::type1)
+				.thenComparingInt(Candidate::type2));
+		Map<Pair<String, String>, List<Pair<Type, Type>>> result = new LinkedHashMap<>();
+		for (Candidate c : sorted) {
+			result.computeIfAbsent(Pair.of(folders.get(c.folder1()), folders.get(c.folder2())), x -> new ArrayList<>())
+					.add(Pair.of(folderTypes.get(c.folder1()).get(c.type1()), folderTypes.get(c.folder2()).get(c.type2())));
+		}
+		LOGGER.info("LSH screening found {} candidate type pairs in {} of {} folder pairs ({} buckets ignored as too large)",
+				sorted.size(), result.size(), (long) folders.size() * (folders.size() - 1) / 2, ignoredBuckets);
+		return result;
+	}
+	
+	/**
+	 * A candidate pair of the <code>type1</code>-th type of the <code>folder1</code>-th folder and the
+	 * <code>type2</code>-th type of the <code>folder2</code>-th folder, where <code>folder1 &lt; folder2</code>.
+	 */
+	private record Candidate(int folder1, int type1, int folder2, int type2) {
+	}
+	
+	private void addCandidates(List<Long> bucket, List<List<long[]>> signatures, Set<Candidate> candidates) {
+		for (int a = 0; a < bucket.size(); a++) {
+			for (int b = a + 1; b < bucket.size(); b++) {
+				// Entries are ordered by folder index first, since it is stored in the upper bits
+				long entry1 = Math.min(bucket.get(a), bucket.get(b));
+				long entry2 = Math.max(bucket.get(a), bucket.get(b));
+				int folder1 = (int) (entry1 >>> 32);
+				int folder2 = (int) (entry2 >>> 32);
+				if (folder1 == folder2) {
+					continue;
+				}
+				long[] signature1 = signatures.get(folder1).get((int) entry1);
+				long[] signature2 = signatures.get(folder2).get((int) entry2);
+				if (estimateSimilarity(signature1, signature2) >= minSimilarity) {
+					candidates.add(new Candidate(folder1, (int) entry1, folder2, (int) entry2));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the MinHash signature of the renamed <code>type</code>, i.e., for each of the <code>bands * rows</code>
+	 * hash functions, the minimum hash of all shingles.
+	 */
+	private long[] computeSignature(Type type) {
+		int[] tokens = type.getFeatures(true).getTokens();
+		int n = Math.min(shingleLength, tokens.length);
+		long[] signature = new long[bands * rows];
+		Arrays.fill(signature, Long.MAX_VALUE);
+		for (int start = 0; start + n <= tokens.length; start++) {
+			long shingle = Hashing.hash(tokens, start, n);
+			// The hash functions are derived from a single hash by mixing it with a different seed each
+			for (int h = 0; h < signature.length; h++) {
+				signature[h] = Math.min(signature[h], Hashing.mix(shingle ^ (0x9e3779b97f4a7c15L * (h + 1))));
+			}
+		}
+		return signature;
+	}
+	
+	private long hashBand(long[] signature, int band) {
+		long hash = band;
+		for (int i = band * rows; i < (band + 1) * rows; i++) {
+			hash = Hashing.append(hash, signature[i]);
+		}
+		return Hashing.mix(hash);
+	}
+	
+	/**
+	 * Returns the estimated Jaccard similarity of two types, which is the fraction of equal values of their
+	 * signatures.
+	 */
+	private static double estimateSimilarity(long[] signature1, long[] signature2) {
+		int equal = 0;
+		for (int i = 0; i < signature1.length; i++) {
+			if (signature1[i] == signature2[i]) {
+				equal++;
+			}
+		}
+		return (double) equal / signature1.length;
+	}
+	
+}
@@ -0,0 +1,117 @@
+package comparison;
+
+import ast.Type;
+import me.tongfei.progressbar.ProgressBar;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Provides the parsed (and renamed) types of folders, so that each folder is parsed only once and then reused for all
+ * folder pairs it is part of (instead of parsing it anew for every single pair).
+ * <p>
+ * By default, the types of all folders are kept in memory. If the number of parsed folders that are kept in memory
+ * is bounded (see {@link #ParsedFolders(Function, int)}), the least recently used folders are dropped once this bound
+ * is exceeded and parsed again if they are requested later on. In this bounded mode, {@link #tileFolderPairs(List, List, int)}
+ * should be used to order the folder pairs such that the number of re-parsed folders is kept low.
+ */
+class ParsedFolders {
+	
+	private final Function<String, List<Type>> parser;
+	private final int maxParsedFolders;
+	private final Map<String, List<Type>> parsed;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param parser           The function to parse the types of a single folder
+	 * @param maxParsedFolders The maximum number of parsed folders that are kept in memory. If this value is less than
+	 *                         or equal to 0, all parsed folders are kept in memory
+	 */
+	ParsedFolders(Function<String, List<Type>> parser, int maxParsedFolders) {
+		this.parser = parser;
+		this.maxParsedFolders = maxParsedFolders;
+		if (isBounded()) {
+			// Access order (third argument), so the eldest entry is always the least recently used one
+			parsed = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, List<Type>> eldest) {
+					return size() > maxParsedFolders;
+				}
+			});
+		} else {
+			parsed = new ConcurrentHashMap<>();
+		}
+	}
+	
+	boolean isBounded() {
+		return maxParsedFolders > 0;
+	}
+	
+	/**
+	 * Parses all <code>folders</code> up front. In bounded mode, this method does nothing, since the folders could not
+	 * be kept in memory anyway, so they are parsed lazily in {@link #get(String)} instead.
+	 *
+	 * @param folders  The folders to parse
+	 * @param parallel Whether to parse the folders in parallel
+	 */
+	void parseAll(List<String> folders, boolean parallel) {
+		if (isBounded()) {
+			return;
+		}
+		try (ProgressBar pb = new ProgressBar("Parsing folders", folders.size())) {
+			Stream<String> foldersStream = parallel ? folders.parallelStream() : folders.stream();
+			foldersStream.forEach(folder -> {
+				parsed.computeIfAbsent(folder, parser);
+				pb.step();
+			});
+		}
+	}
+	
+	/**
+	 * Returns the parsed types of <code>folder</code>. If the folder has not been parsed yet (or if it was dropped in
+	 * bounded mode), it is parsed now.
+	 *
+	 * @param folder The folder whose types should be returned
+	 * @return The parsed types of <code>folder</code>
+	 */
+	List<Type> get(String folder) {
+		List<Type> types = parsed.get(folder);
+		if (types == null) {
+			// Do not parse within the (synchronized) map, as this would block all other threads in bounded mode. In
+			// the rare case that two threads parse the same folder at the same time, one result is simply discarded
+			types = parser.apply(folder);
+			parsed.put(folder, types);
+		}
+		return types;
+	}
+	
+	/**
+	 * Orders the specified <code>folderPairs</code> in tiles: The folders are split into consecutive blocks of size
+	 * <code>maxParsedFolders / 2</code>, and all pairs between two such blocks are placed next to each other. This way,
+	 * at most two blocks are needed at the same time, which is what {@link #get(String)} can keep in memory in bounded
+	 * mode. With <code>N</code> folders and block size <code>B</code>, each folder is then parsed roughly
+	 * <code>N / B</code> times instead of up to <code>N</code> times.
+	 *
+	 * @param folderPairs      The folder pairs, where all folders must be contained in <code>folders</code>
+	 * @param folders          The list of folders that defines the blocks
+	 * @param maxParsedFolders The maximum number of parsed folders that are kept in memory
+	 * @return A new list with the same folder pairs in tiled order
+	 */
+	static List<Pair<String, String>> tileFolderPairs(List<Pair<String, String>> folderPairs, List<String> folders, int maxParsedFolders) {
+		int blockSize = Math.max(1, maxParsedFolders / 2);
+		Map<String, Integer> blocks = new HashMap<>();
+		for (int i = 0; i < folders.size(); i++) {
+			blocks.put(folders.get(i), i / blockSize);
+		}
+		List<Pair<String, String>> tiled = new ArrayList<>(folderPairs);
+		// List.sort is stable, so the original order is kept within a tile
+		tiled.sort(Comparator.<Pair<String, String>>comparingInt(p -> Math.min(blocks.get(p.getLeft()), blocks.get(p.getRight())))
+				.thenComparingInt(p -> Math.max(blocks.get(p.getLeft()), blocks.get(p.getRight()))));
+		return tiled;
+	}
+	
+}
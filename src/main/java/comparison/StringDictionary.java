@@ -0,0 +1,76 @@
+package comparison;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a stable ID to every distinct string (folders, files and type names), which can be shared by multiple
+ * {@link ComparisonTable}s, so that every string is stored only once per run and all tables of a run use the same
+ * IDs. {@link Comparer} creates one dictionary and passes it to every table it creates (see
+ * {@link Comparer#getStrings()}).
+ * <p>
+ * This class is thread-safe. Looking up a string that already has an ID does not lock, so the tables of multiple
+ * folder pairs can be filled in parallel.
+ */
+public class StringDictionary {
+	
+	private final Map<String, Integer> ids;
+	private volatile String[] strings;
+	private int size;
+	
+	public StringDictionary() {
+		ids = new ConcurrentHashMap<>();
+		strings = new String[1024];
+		size = 0;
+	}
+	
+	/**
+	 * Returns the ID of <code>s</code>, which is assigned when <code>s</code> is interned for the first time.
+	 *
+	 * @param s The string to intern
+	 * @return The ID of <code>s</code>
+	 */
+	public int intern(String s) {
+		Integer id = ids.get(Objects.requireNonNull(s));
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(s);
+			if (id == null) {
+				String[] array = size == strings.length ? Arrays.copyOf(strings, size * 2) : strings;
+				array[size] = s;
+				// Written after the string, so that every thread that knows the ID also sees the string (see get)
+				strings = array;
+				id = size++;
+				ids.put(s, id);
+			}
+			return id;
+		}
+	}
+	
+	/**
+	 * Returns the string with the specified ID (see {@link #intern(String)}).
+	 *
+	 * @param id The ID of the string
+	 * @return The string with the ID <code>id</code>
+	 */
+	public String get(int id) {
+		String[] array = strings;
+		String s = id >= 0 && id < array.length ? array[id] : null;
+		if (s == null) {
+			throw new IllegalArgumentException("unknown string ID: " + id);
+		}
+		return s;
+	}
+	
+	/**
+	 * Returns the number of distinct strings.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+	
+}
@@ -5,7 +5,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.text.StringEscapeUtils;
 
 import java.nio.file.Path;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.StringJoiner;
 
@@ -15,14 +15,54 @@ public class TypeComparison {
 	private final Path file2;
 	private final String type1;
 	private final String type2;
-	private final List<Pair<MetricScorer, Double>> metrics;
+	private final List<MetricScorer> metricScorers;
+	private final double[] scores;
+	private final boolean approximate;
 	
 	public TypeComparison(Path file1, Path file2, String type1, String type2, List<Pair<MetricScorer, Double>> metrics) {
+		this(file1, file2, type1, type2, metrics, false);
+	}
+	
+	/**
+	 * Creates a new instance using the specified arguments.
+	 *
+	 * @param file1       The file that contains <code>type1</code>
+	 * @param file2       The file that contains <code>type2</code>
+	 * @param type1       The name of the first type
+	 * @param type2       The name of the second type
+	 * @param metrics     The metrics of the two types
+	 * @param approximate Whether any metric (or the match itself) is based on an approximated diff, because the actual
+	 *                    diff exceeded its budget (see {@link comparison.scoring.ASTDiffCache#setBudget(long, int)})
+	 */
+	public TypeComparison(Path file1, Path file2, String type1, String type2, List<Pair<MetricScorer, Double>> metrics, boolean approximate) {
+		this(file1, file2, type1, type2, metrics.stream().map(Pair::getLeft).toList(),
+				metrics.stream().mapToDouble(Pair::getRight).toArray(), approximate);
+	}
+	
+	/**
+	 * Creates a new instance with the metric scores as primitive array, where the {@link MetricScorer} of each score
+	 * is at the same index of <code>metricScorers</code>. Both are stored without copying, so that all type comparisons
+	 * of a {@link Comparer} can share the same list of {@link MetricScorer}s, and neither must be modified afterward.
+	 *
+	 * @param file1         The file that contains <code>type1</code>
+	 * @param file2         The file that contains <code>type2</code>
+	 * @param type1         The name of the first type
+	 * @param type2         The name of the second type
+	 * @param metricScorers The {@link MetricScorer}s of the scores
+	 * @param scores        The metric scores of the two types
+	 * @param approximate   Whether any metric (or the match itself) is based on an approximated diff
+	 */
+	public TypeComparison(Path file1, Path file2, String type1, String type2, List<MetricScorer> metricScorers, double[] scores, boolean approximate) {
+		if (metricScorers.size() != scores.length) {
+			throw new IllegalArgumentException("number of metric scorers and scores must be equal");
+		}
 		this.file1 = file1.toAbsolutePath().normalize();
 		this.file2 = file2.toAbsolutePath().normalize();
 		this.type1 = type1;
 		this.type2 = type2;
-		this.metrics = metrics;
+		this.metricScorers = metricScorers;
+		this.scores = scores;
+		this.approximate = approximate;
 	}
 	
 	public Path getFile1() {
@@ -41,16 +81,41 @@ public class TypeComparison {
 		return type2;
 	}
 	
+	/**
+	 * Returns the metrics as pairs of {@link MetricScorer} and score, which are created anew on every call. Prefer
+	 * {@link #getMetricScorers()} and {@link #getScores()} when processing many comparisons.
+	 */
 	public List<Pair<MetricScorer, Double>> getMetrics() {
-		return Collections.unmodifiableList(metrics);
+		List<Pair<MetricScorer, Double>> metrics = new ArrayList<>(scores.length);
+		for (int i = 0; i < scores.length; i++) {
+			metrics.add(Pair.of(metricScorers.get(i), scores[i]));
+		}
+		return metrics;
+	}
+	
+	public List<MetricScorer> getMetricScorers() {
+		return metricScorers;
+	}
+	
+	/**
+	 * Returns the metric scores in the order of {@link #getMetricScorers()}. The returned array is not copied, so it
+	 * must not be modified.
+	 */
+	public double[] getScores() {
+		return scores;
+	}
+	
+	public boolean isApproximate() {
+		return approximate;
 	}
 	
 	String getCSVHeader() {
 		StringBuilder sb = new StringBuilder("file1,file2,type1,type2");
-		metrics.forEach(pair -> {
+		metricScorers.forEach(metricScorer -> {
 			sb.append(",");
-			sb.append(StringEscapeUtils.escapeCsv(pair.getLeft().getName()));
+			sb.append(StringEscapeUtils.escapeCsv(metricScorer.getName()));
 		});
+		sb.append(",approximate");
 		return sb.toString();
 	}
 	
@@ -60,7 +125,10 @@ public class TypeComparison {
 		sj.add(StringEscapeUtils.escapeCsv(file2.toString()));
 		sj.add(StringEscapeUtils.escapeCsv(type1));
 		sj.add(StringEscapeUtils.escapeCsv(type2));
-		metrics.forEach(pair -> sj.add(StringEscapeUtils.escapeCsv(pair.getRight().toString())));
+		for (double score : scores) {
+			sj.add(StringEscapeUtils.escapeCsv(Double.toString(score)));
+		}
+		sj.add(Boolean.toString(approximate));
 		return sj.toString();
 	}
 	
@@ -2,50 +2,221 @@ package comparison;
 
 import ast.Type;
 import comparison.scoring.ASTCountDiffScorer;
+import comparison.scoring.ASTDiffCache;
 import comparison.scoring.ASTDiffScorer;
 import comparison.scoring.LevenshteinNameScorer;
+import comparison.scoring.NodeKindHistogramScorer;
 import comparison.scoring.TypeComparisonScorer;
+import comparison.scoring.metrics.ASTCountDiffMetricScorer;
 import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
 
 public class TypeMatcher {
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(TypeMatcher.class);
+	
+	private final List<TypeComparisonScorer> preRankingScorers;
+	private final int topK;
 	private final List<TypeComparisonScorer> typeComparisonScorers;
+	private boolean validatePruning;
+	private boolean optimalAssignment;
+	private BiPredicate<Type, Type> candidateFilter;
+	private final AtomicLong prunedMatches;
+	private final AtomicLong changedMatches;
+	private final AtomicLong cheapMatches;
+	
+	/**
+	 * Creates a new instance without any pre-ranking of candidates.
+	 *
+	 * @see #TypeMatcher(int)
+	 */
+	public TypeMatcher() {
+		this(0);
+	}
+	
+	/**
+	 * Creates a new instance with default scorers that compute their diffs without any cache.
+	 *
+	 * @param topK The number of pre-ranked candidates (see {@link #TypeMatcher(List, int, List)})
+	 * @see #TypeMatcher(int, ASTDiffCache)
+	 */
+	public TypeMatcher(int topK) {
+		this(topK, null);
+	}
 	
 	/**
 	 * Creates a new instance with the following default list of {@link TypeComparisonScorer}s:
 	 * <ul>
-	 *     <li>{@link ASTDiffScorer#ASTDiffScorer(boolean) ASTDiffScorer(false)}</li>
-	 *     <li>{@link ASTDiffScorer#ASTDiffScorer(boolean) ASTDiffScorer(true)}</li>
+	 *     <li>{@link ASTDiffScorer#ASTDiffScorer(boolean, ASTDiffCache) ASTDiffScorer(false, diffCache)}</li>
+	 *     <li>{@link ASTDiffScorer#ASTDiffScorer(boolean, ASTDiffCache) ASTDiffScorer(true, diffCache)}</li>
 	 *     <li>{@link ASTCountDiffScorer#ASTCountDiffScorer(boolean) ASTCountDiffScorer(false)}</li>
 	 *     <li>{@link LevenshteinNameScorer}</li>
 	 * </ul>
+	 * and the following default list of cheap pre-ranking {@link TypeComparisonScorer}s:
+	 * <ul>
+	 *     <li>{@link ASTCountDiffMetricScorer#ASTCountDiffMetricScorer(boolean) ASTCountDiffMetricScorer(false)}</li>
+	 *     <li>{@link NodeKindHistogramScorer#NodeKindHistogramScorer(boolean) NodeKindHistogramScorer(false)}</li>
+	 *     <li>{@link LevenshteinNameScorer}</li>
+	 * </ul>
 	 *
-	 * @see #TypeMatcher(List)
+	 * If <code>diffCache</code> is <code>null</code>, the diff scorers use
+	 * {@link ASTDiffScorer#ASTDiffScorer(boolean)} instead, i.e., they compute their diffs without any cache.
+	 *
+	 * @param topK      The number of pre-ranked candidates (see {@link #TypeMatcher(List, int, List)})
+	 * @param diffCache The cache to get the diffs from, or <code>null</code> to compute them without any cache
+	 * @see #TypeMatcher(List, int, List)
 	 */
-	public TypeMatcher() {
+	public TypeMatcher(int topK, ASTDiffCache diffCache) {
 		this(List.of(
-				new ASTDiffScorer(false),
-				new ASTDiffScorer(true),
+				new ASTCountDiffMetricScorer(false),
+				new NodeKindHistogramScorer(false),
+				new LevenshteinNameScorer()
+		), topK, List.of(
+				diffCache == null ? new ASTDiffScorer(false) : new ASTDiffScorer(false, diffCache),
+				diffCache == null ? new ASTDiffScorer(true) : new ASTDiffScorer(true, diffCache),
 				new ASTCountDiffScorer(false),
 				new LevenshteinNameScorer()
 		));
 	}
 	
 	/**
-	 * Creates a new instance with the specified <code>typeComparisonScorers</code>.
+	 * Creates a new instance with the specified <code>typeComparisonScorers</code> and without any pre-ranking of
+	 * candidates.
 	 *
 	 * @param typeComparisonScorers The list of {@link TypeComparisonScorer}s to compute scores for all possible pairs
 	 *                              of types in {@link #findMatchingType(Type, List)}
 	 */
 	public TypeMatcher(List<TypeComparisonScorer> typeComparisonScorers) {
+		this(List.of(), 0, typeComparisonScorers);
+	}
+	
+	/**
+	 * Creates a new instance that matches types in two stages: First, all candidates are ranked using the (cheap)
+	 * <code>preRankingScorers</code>, and only the <code>topK</code> best candidates are kept. Second, the best match
+	 * out of these remaining candidates is selected using the (expensive) <code>typeComparisonScorers</code>. Both
+	 * stages rank the candidates the same way (see {@link #findMatchingType(Type, List)}).
+	 *
+	 * @param preRankingScorers     The list of cheap {@link TypeComparisonScorer}s to pre-rank all candidates with
+	 * @param topK                  The number of best pre-ranked candidates to keep for the second stage. If this value
+	 *                              is less than or equal to 0, the first stage is skipped, i.e., all candidates are
+	 *                              scored with the <code>typeComparisonScorers</code>
+	 * @param typeComparisonScorers The list of {@link TypeComparisonScorer}s to compute scores for all remaining pairs
+	 *                              of types in {@link #findMatchingType(Type, List)}
+	 */
+	public TypeMatcher(List<TypeComparisonScorer> preRankingScorers, int topK, List<TypeComparisonScorer> typeComparisonScorers) {
+		this.preRankingScorers = preRankingScorers;
+		this.topK = topK;
 		this.typeComparisonScorers = typeComparisonScorers;
+		validatePruning = false;
+		optimalAssignment = false;
+		prunedMatches = new AtomicLong();
+		changedMatches = new AtomicLong();
+		cheapMatches = new AtomicLong();
+	}
+	
+	public boolean isValidatePruning() {
+		return validatePruning;
+	}
+	
+	/**
+	 * Sets whether each match that was found after pruning candidates to the top-k pre-ranked ones should be validated
+	 * against the exhaustive match that would have been found without pruning. This is expensive (it defeats the
+	 * purpose of pruning), but it allows to assess how often pruning changes the match (see
+	 * {@link #logPruningStatistics()}). Optimal assignments (see {@link #setOptimalAssignment(boolean)}) are never
+	 * pruned, so there is nothing to validate.
+	 *
+	 * @param validatePruning Whether to validate pruned matches against exhaustive matches
+	 */
+	public void setValidatePruning(boolean validatePruning) {
+		this.validatePruning = validatePruning;
+	}
+	
+	public boolean isOptimalAssignment() {
+		return optimalAssignment;
+	}
+	
+	/**
+	 * Sets whether {@link #findMatchingTypes(List, List)} should assign the types one-to-one, such that the overall
+	 * match quality is optimal, instead of finding the best match for each type independently (default). The
+	 * assignment is mainly based on the cheap pre-ranking scorers (see {@link #findMatchingTypes(List, List)}).
+	 *
+	 * @param optimalAssignment Whether to find an optimal one-to-one assignment
+	 */
+	public void setOptimalAssignment(boolean optimalAssignment) {
+		this.optimalAssignment = optimalAssignment;
+	}
+	
+	public BiPredicate<Type, Type> getCandidateFilter() {
+		return candidateFilter;
+	}
+	
+	/**
+	 * Sets a cheap filter that decides whether a candidate is relevant at all, e.g., whether the type and the candidate
+	 * can still be detected as plagiarism based on their cheap metrics (see
+	 * {@link Comparer#setEarlyExitDetection(detection.PlagiarismDetection)}). If none of the (pre-ranked) candidates of
+	 * a type passes the filter, the match of this type does not matter, so the expensive
+	 * <code>typeComparisonScorers</code> (in particular, the diffs) are skipped and the best candidate according to the
+	 * <code>preRankingScorers</code> is used instead (see {@link #TypeMatcher(List, int, List)}). Otherwise, all
+	 * candidates are ranked as usual, since the ranks are relative and the best match might still be a filtered
+	 * candidate. If <code>null</code> (default), all candidates are always ranked with the
+	 * <code>typeComparisonScorers</code>.
+	 *
+	 * @param candidateFilter The filter that returns whether a candidate (second argument) is relevant for a type
+	 *                        (first argument), or <code>null</code>
+	 */
+	public void setCandidateFilter(BiPredicate<Type, Type> candidateFilter) {
+		this.candidateFilter = candidateFilter;
+	}
+	
+	/**
+	 * Returns the number of matches that were found with the <code>preRankingScorers</code> only, because none of the
+	 * candidates passed the candidate filter (see {@link #setCandidateFilter(BiPredicate)}) or, with optimal
+	 * assignment (see {@link #setOptimalAssignment(boolean)}), because there was no tie to break.
+	 */
+	public long getCheapMatches() {
+		return cheapMatches.get();
+	}
+	
+	/**
+	 * Returns the number of matches that were found after pruning candidates to the top-k pre-ranked ones.
+	 */
+	public long getPrunedMatches() {
+		return prunedMatches.get();
 	}
 	
 	/**
-	 * Using the {@link TypeComparisonScorer}s specified in the constructor ({@link #TypeMatcher(List)}), returns one
-	 * type out of <code>candidates</code> which is identified as the best match for <code>type</code>.
+	 * Returns the number of pruned matches (see {@link #getPrunedMatches()}) that differ from the exhaustive match.
+	 * This is only counted if pruned matches are validated (see {@link #setValidatePruning(boolean)}).
+	 */
+	public long getChangedMatches() {
+		return changedMatches.get();
+	}
+	
+	public void logPruningStatistics() {
+		if (candidateFilter != null) {
+			LOGGER.info("candidate filter: {} matches without expensive scorers", getCheapMatches());
+		}
+		if (topK <= 0) {
+			return;
+		}
+		if (validatePruning) {
+			long pruned = getPrunedMatches();
+			long changed = getChangedMatches();
+			LOGGER.info("top-{} pruning: {} of {} pruned matches differ from the exhaustive match ({}%)", topK,
+					changed, pruned, pruned == 0 ? 0 : String.format("%.2f", 100.0 * changed / pruned));
+		} else {
+			LOGGER.info("top-{} pruning: {} pruned matches (not validated)", topK, getPrunedMatches());
+		}
+	}
+	
+	/**
+	 * Using the {@link TypeComparisonScorer}s specified in the constructor ({@link #TypeMatcher(List, int, List)}),
+	 * returns one type out of <code>candidates</code> which is identified as the best match for <code>type</code>.
 	 *
 	 * @param type       The type to search a matching candidate for
 	 * @param candidates The list of possible candidates, out of which a single one will be selected as the one that
@@ -57,10 +228,190 @@ public class TypeMatcher {
 			throw new IllegalArgumentException("candidates must not be empty");
 		}
 		
-		// Maps each candidate type to a list of its scores that were computed with all "typeComparisonScorers"
+		List<Type> remaining = candidates;
+		if (topK > 0 && candidates.size() > topK) {
+			remaining = rank(type, candidates, preRankingScorers).subList(0, topK);
+		}
+		if (!hasRelevantCandidate(type, remaining)) {
+			cheapMatches.incrementAndGet();
+			// Already ranked by the pre-ranking scorers if pruned
+			return remaining != candidates ? remaining.get(0) : rank(type, candidates, preRankingScorers).get(0);
+		}
+		Type match = rank(type, remaining, typeComparisonScorers).get(0);
+		
+		if (remaining != candidates) {
+			prunedMatches.incrementAndGet();
+			if (validatePruning && rank(type, candidates, typeComparisonScorers).get(0) != match) {
+				changedMatches.incrementAndGet();
+			}
+		}
+		return match;
+	}
+	
+	/**
+	 * Returns the matching type out of <code>candidates</code> for each of the specified <code>types</code>, in the same
+	 * order as <code>types</code>. By default, this is the same as calling {@link #findMatchingType(Type, List)} for
+	 * each type independently, so multiple types might have the same match.
+	 * <p>
+	 * If optimal assignment is enabled (see {@link #setOptimalAssignment(boolean)}), a single cost matrix of all types
+	 * and all candidates is computed with the cheap <code>preRankingScorers</code> (see
+	 * {@link #TypeMatcher(List, int, List)}), which work on the memoized features of the types, and then each type is
+	 * assigned to a distinct candidate, such that the sum of the logarithms of the rank products (see
+	 * {@link #findMatchingType(Type, List)}) of all assigned pairs is minimal, i.e., the product of all rank products is
+	 * minimal. This avoids that a candidate is matched to several types just because it is similar to all of them,
+	 * while the actual counterpart of one of these types remains unmatched. The expensive
+	 * <code>typeComparisonScorers</code> are only used to break ties between the best candidates of a type (unless
+	 * none of them is relevant, see {@link #setCandidateFilter(BiPredicate)}), so instead of scoring all
+	 * <code>types.size() * candidates.size()</code> pairs with the expensive scorers, only the tied pairs are. The
+	 * pre-ranking of the candidates (<code>topK</code>) is not needed in this case and thus not applied. If there are
+	 * more types than candidates, the types that could not be assigned get their individually best match.
+	 *
+	 * @param types      The types to search matching candidates for
+	 * @param candidates The list of possible candidates
+	 * @return The matching candidate of each type of <code>types</code>
+	 */
+	public List<Type> findMatchingTypes(List<Type> types, List<Type> candidates) {
+		if (!optimalAssignment) {
+			return types.stream().map(type -> findMatchingType(type, candidates)).toList();
+		}
+		if (candidates.isEmpty()) {
+			throw new IllegalArgumentException("candidates must not be empty");
+		}
+		if (types.isEmpty()) {
+			return List.of();
+		}
+		return assign(computeCosts(types, candidates), candidates);
+	}
+	
+	/**
+	 * Returns the assignment costs of all <code>types</code> (rows) and <code>candidates</code> (columns) for
+	 * {@link #findMatchingTypes(List, List)}, which are the sums of the logarithms of the ranks of the
+	 * <code>preRankingScorers</code>, where ties of the minimum cost of a row are broken with the
+	 * <code>typeComparisonScorers</code>.
+	 */
+	private double[][] computeCosts(List<Type> types, List<Type> candidates) {
+		double[][] costs = new double[types.size()][candidates.size()];
+		for (int i = 0; i < types.size(); i++) {
+			Type type = types.get(i);
+			Map<Type, List<Integer>> ranks = computeRanks(type, candidates, preRankingScorers);
+			for (int j = 0; j < candidates.size(); j++) {
+				// Sum of logarithms instead of the product, since the assignment minimizes the sum of costs (without any
+				// pre-ranking scorers, all candidates have the same cost, so they are all ranked by the tie-breaking)
+				List<Integer> candidateRanks = ranks.get(candidates.get(j));
+				costs[i][j] = candidateRanks == null ? 0 : candidateRanks.stream().mapToDouble(Math::log).sum();
+			}
+			breakTies(type, candidates, costs[i]);
+		}
+		return costs;
+	}
+	
+	/**
+	 * Ranks all candidates with the minimum cost of <code>row</code> (if there are several) with the
+	 * <code>typeComparisonScorers</code> and increases their costs according to this ranking. The increases are less
+	 * than the difference to the next larger cost of the row, so the order of all other candidates does not change.
+	 */
+	private void breakTies(Type type, List<Type> candidates, double[] row) {
+		double min = Double.POSITIVE_INFINITY;
+		for (double cost : row) {
+			min = Math.min(min, cost);
+		}
+		double next = Double.POSITIVE_INFINITY;
+		List<Type> tied = new ArrayList<>();
+		List<Integer> tiedIndices = new ArrayList<>();
+		for (int j = 0; j < row.length; j++) {
+			if (row[j] == min) {
+				tied.add(candidates.get(j));
+				tiedIndices.add(j);
+			} else {
+				next = Math.min(next, row[j]);
+			}
+		}
+		if (tied.size() < 2 || !hasRelevantCandidate(type, tied)) {
+			cheapMatches.incrementAndGet();
+			return;
+		}
+		double step = (next == Double.POSITIVE_INFINITY ? 1 : next - min) / tied.size();
+		List<Type> ranked = rank(type, tied, typeComparisonScorers);
+		for (int r = 1; r < ranked.size(); r++) {
+			row[tiedIndices.get(tied.indexOf(ranked.get(r)))] += r * step;
+		}
+	}
+	
+	/**
+	 * Returns the candidate that is assigned to each type (row of <code>costs</code>) by an optimal assignment, where
+	 * types that could not be assigned get their individually best candidate.
+	 */
+	private static List<Type> assign(double[][] costs, List<Type> candidates) {
+		int[] assignment = Assignment.solve(costs);
+		List<Type> matches = new ArrayList<>(costs.length);
+		for (int i = 0; i < costs.length; i++) {
+			int j = assignment[i];
+			if (j < 0) {
+				// Not assigned (more types than candidates), so use the individually best (minimum cost) candidate
+				j = 0;
+				for (int k = 1; k < candidates.size(); k++) {
+					if (costs[i][k] < costs[i][j]) {
+						j = k;
+					}
+				}
+			}
+			matches.add(candidates.get(j));
+		}
+		return matches;
+	}
+	
+	private boolean hasRelevantCandidate(Type type, List<Type> candidates) {
+		if (candidateFilter == null) {
+			return true;
+		}
+		for (Type candidate : candidates) {
+			if (candidateFilter.test(type, candidate)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns a new list containing all <code>candidates</code> sorted according to how well they match
+	 * <code>type</code> (best match first) using the specified <code>scorers</code>.
+	 */
+	private static List<Type> rank(Type type, List<Type> candidates, List<TypeComparisonScorer> scorers) {
+		Map<Type, List<Integer>> comparison = computeRanks(type, candidates, scorers);
+		
+		// With the normalized ranks (see computeRanks below), we can now look for the "best" match, where "best" is simply
+		// defined as the minimum product of a types (a "candidate"'s) differences. The product (compared to summing the
+		// differences) has the advantage that multiple low values are more heavily rewarded, e.g., if there are the
+		// scores (1, 1, 4) and (2, 2, 1), the product (4 vs. 9) would still favor the first type, whereas the sum
+		// (8 vs. 7) would favor the second type, which probably follows the intuition that the first type is likely the
+		// matching one ("two best scores vs. probably one outlier"). Of course, this is just a heuristic and can lead
+		// to false results. Example from computeRanks (below):
+		// Comparing 'Exercise1' ("type")
+		//   to OneDimensionalArray ("candidate"), scoreA = 1, scoreB = 1, scoreC = 1 --> product =  1
+		//   to      StoryGenerator ("candidate"), scoreA = 3, scoreB = 3, scoreC = 2 --> product = 18
+		//   to      TextConversion ("candidate"), scoreA = 2, scoreB = 2, scoreC = 3 --> product = 12
+		//   to       TwoDimensions ("candidate"), scoreA = 4, scoreB = 4, scoreC = 4 --> product = 64
+		// In this case, the 'OneDimensionalArray' type ("candidate") will be selected as the best match for the
+		// original type 'Exercise1' ("type"). The product is computed as long, since it can quickly overflow with
+		// many candidates and scorers. List.sort is stable, so ties are resolved by the order of "candidates"
+		Map<Type, Long> products = new HashMap<>();
+		comparison.forEach((candidate, ranks) -> products.put(candidate, ranks.stream()
+				.mapToLong(x -> x)
+				.reduce(1, (a, x) -> a * x)));
+		List<Type> ranked = new ArrayList<>(candidates);
+		ranked.sort(Comparator.comparingLong(candidate -> products.getOrDefault(candidate, 1L)));
+		return ranked;
+	}
+	
+	/**
+	 * Returns the normalized ranks of all <code>candidates</code>, one rank per scorer of <code>scorers</code> (see
+	 * below).
+	 */
+	private static Map<Type, List<Integer>> computeRanks(Type type, List<Type> candidates, List<TypeComparisonScorer> scorers) {
+		// Maps each candidate type to a list of its scores that were computed with all "scorers"
 		Map<Type, List<Integer>> comparison = new HashMap<>();
 		
-		for (TypeComparisonScorer scorer : typeComparisonScorers) {
+		for (TypeComparisonScorer scorer : scorers) {
 			List<Pair<Type, Double>> scores = new ArrayList<>(candidates.size());
 			for (Type candidate : candidates) {
 				double score = scorer.computeComparisonScore(type, candidate);
@@ -82,28 +433,7 @@ public class TypeMatcher {
 			//   to       TwoDimensions ("candidate"), scoreA = 4, scoreB = 4, scoreC = 4
 			sortAndAddNormalized(scores, comparison);
 		}
-		
-		// With the new, normalized mapping from above, we can now look for the "best" match, where "best" is simply
-		// defined as the minimum product of a types (a "candidate"'s) differences. The product (compared to summing the
-		// differences) has the advantage that multiple low values are more heavily rewarded, e.g., if there are the
-		// scores (1, 1, 4) and (2, 2, 1), the product (4 vs. 9) would still favor the first type, whereas the sum
-		// (8 vs. 7) would favor the second type, which probably follows the intuition that the first type is likely the
-		// matching one ("two best scores vs. probably one outlier"). Of course, this is just a heuristic and can lead
-		// to false results. Example from above:
-		// Comparing 'Exercise1' ("type")
-		//   to OneDimensionalArray ("candidate"), scoreA = 1, scoreB = 1, scoreC = 1 --> product =  1
-		//   to      StoryGenerator ("candidate"), scoreA = 3, scoreB = 3, scoreC = 2 --> product = 18
-		//   to      TextConversion ("candidate"), scoreA = 2, scoreB = 2, scoreC = 3 --> product = 12
-		//   to       TwoDimensions ("candidate"), scoreA = 4, scoreB = 4, scoreC = 4 --> product = 64
-		// In this case, the 'OneDimensionalArray' type ("candidate") will be selected as the best match for the
-		// original type 'Exercise1' ("type")
-		return comparison.entrySet().stream()
-				.map(entry -> Pair.of(entry.getKey(), entry.getValue().stream()
-						.mapToInt(x -> x)
-						.reduce(1, (a, x) -> a * x)))
-				.min(Comparator.comparingInt(Pair::getRight))
-				.map(Pair::getLeft)
-				.orElseThrow();
+		return comparison;
 	}
 	
 	private static void sortAndAddNormalized(List<Pair<Type, Double>> diffs, Map<Type, List<Integer>> comparison) {
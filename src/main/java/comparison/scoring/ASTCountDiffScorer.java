@@ -1,7 +1,6 @@
 package comparison.scoring;
 
-import ast.ASTUtil;
-import spoon.reflect.declaration.CtType;
+import ast.TypeFeatures;
 
 public class ASTCountDiffScorer extends OriginalAndRenamedScorer {
 	
@@ -10,9 +9,9 @@ public class ASTCountDiffScorer extends OriginalAndRenamedScorer {
 	}
 	
 	@Override
-	protected double computeComparisonScore(CtType<?> type1, CtType<?> type2) {
-		int countType1 = ASTUtil.countElements(type1);
-		int countType2 = ASTUtil.countElements(type2);
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
+		int countType1 = type1.getElementCount();
+		int countType2 = type2.getElementCount();
 		return Math.abs(countType1 - countType2);
 	}
 	
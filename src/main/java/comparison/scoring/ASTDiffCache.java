@@ -0,0 +1,346 @@
+package comparison.scoring;
+
+import ast.Type;
+import ast.TypeFeatures;
+import gumtree.spoon.AstComparator;
+import gumtree.spoon.diff.Diff;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of GumTree diff results (the number of root operations, see
+ * {@link gumtree.spoon.diff.Diff#getRootOperations()}) that can be shared between multiple scorers, so that the diff
+ * of the same two types is computed at most once. For example, {@link ASTDiffScorer} (used when matching types) and
+ * {@link comparison.scoring.metrics.ASTDiffMetricScorer} (used when computing the metrics of the matched types) both
+ * need the same diffs.
+ * <p>
+ * Entries are keyed by the identity of the two compared {@link TypeFeatures} objects, which implicitly distinguishes
+ * between original and renamed types (see {@link Type#getFeatures(boolean)}). Entries are never evicted
+ * automatically, so the owner of the cache must call {@link #evict(List, List)} once the diffs of two lists of types
+ * are no longer needed.
+ * <p>
+ * A few pathological types (e.g., generated code or huge lookup tables) can make a single diff run for many minutes
+ * or exhaust the memory. To prevent this, a budget can be set (see {@link #setBudget(long, int)}). Diffs that exceed
+ * this budget are replaced with a cheap approximation, which is the distance of the node kind histograms of the two
+ * types (see {@link ast.NodeKindHistogram#distance(ast.NodeKindHistogram)}), i.e., the number of nodes that would have
+ * to be inserted or deleted irrespective of the tree structure. Whether a diff was approximated can be queried with
+ * {@link #isApproximate(Type, Type)}.
+ * <p>
+ * Instead of GumTree diffs of the Spoon models, the diffs can also be computed on the flat trees of the types (see
+ * {@link #setFlatDiff(boolean)}), which does not need the Spoon models at all.
+ * <p>
+ * This class is thread-safe (except for {@link #setBudget(long, int)} and {@link #setFlatDiff(boolean)}, which must be
+ * called before the cache is used). GumTree stores its mappings as metadata in the compared Spoon elements (which is
+ * not thread-safe), and the types of a folder are shared by all comparisons of this folder, so concurrent GumTree diffs
+ * that involve the same type are serialized (see {@link #compare(AstComparator, TypeFeatures, TypeFeatures)}).
+ */
+public class ASTDiffCache {
+	
+	private record Key(TypeFeatures type1, TypeFeatures type2) {
+		// TypeFeatures does not override equals/hashCode, so this record uses identity semantics as required
+	}
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(ASTDiffCache.class);
+	/**
+	 * Lock for the rare case that two different types have the same identity hash code, so that their locks cannot be
+	 * ordered (see {@link #withLocks(Object, Object, Supplier)}).
+	 */
+	private static final Object TIE_LOCK = new Object();
+	
+	private final AstComparator comparator;
+	private final Map<Key, Integer> rootOperations;
+	private final Set<Key> approximated;
+	private final Set<TypeFeatures> timedOutTypes;
+	private final Set<TypeFeatures> runawayTypes;
+	private final AtomicLong approximatedDiffs;
+	private long timeoutMillis;
+	private int maxElements;
+	private ExecutorService diffExecutor;
+	private boolean flatDiff;
+	
+	public ASTDiffCache() {
+		this(new AstComparator());
+	}
+	
+	public ASTDiffCache(AstComparator comparator) {
+		this.comparator = comparator;
+		rootOperations = new ConcurrentHashMap<>();
+		approximated = ConcurrentHashMap.newKeySet();
+		// Weak, so that remembering a type does not keep its Spoon model alive after its folder is done
+		timedOutTypes = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+		// TypeFeatures uses identity semantics, and entries are removed as soon as the runaway diff finishes
+		runawayTypes = ConcurrentHashMap.newKeySet();
+		approximatedDiffs = new AtomicLong();
+		timeoutMillis = 0;
+		maxElements = 0;
+		diffExecutor = null;
+		flatDiff = false;
+	}
+	
+	public boolean isFlatDiff() {
+		return flatDiff;
+	}
+	
+	/**
+	 * Sets whether the diffs are computed on the flat trees of the types (see {@link FlatTreeDiff} and
+	 * {@link TypeFeatures#getFlatTree()}) instead of with GumTree on the Spoon models (default: <code>false</code>).
+	 * Flat diffs are faster and allow releasing the Spoon models of parsed types (see {@link Type#releaseModel()}), but
+	 * their number of root operations can differ slightly from the GumTree diffs, so the scores of both are not
+	 * comparable.
+	 *
+	 * @param flatDiff Whether to compute the diffs on the flat trees
+	 */
+	public void setFlatDiff(boolean flatDiff) {
+		this.flatDiff = flatDiff;
+	}
+	
+	/**
+	 * Sets the budget of every single diff. If a diff exceeds this budget, it is approximated instead (see
+	 * {@link ASTDiffCache}).
+	 * <p>
+	 * Note that a diff that exceeds the time budget cannot be stopped, since GumTree does not react to interrupts. The
+	 * diff is thus abandoned but continues to run in the background until it finishes (on a daemon thread, so it does
+	 * not prevent the JVM from exiting). The comparison itself continues right away with the approximation. To prevent
+	 * that such abandoned diffs pile up, the diffs run on a bounded number of threads (one per available processor),
+	 * and the larger type of a timed out diff is remembered, so that all of its later diffs are approximated right away
+	 * instead of starting another runaway diff. Since a GumTree diff holds the locks of both of its types (see
+	 * {@link #compare(AstComparator, TypeFeatures, TypeFeatures)}), all other diffs of these types are also approximated
+	 * right away while the runaway diff is still running, instead of blocking a thread until it finishes. If all threads
+	 * are busy, a diff waits in a queue, which counts towards its time budget. A diff only counts as timed out (and its
+	 * type is only remembered) if it actually started, i.e., not if it was still waiting for a thread or for the locks of
+	 * its types. Still, the node budget should be used to skip the most extreme types upfront.
+	 *
+	 * @param timeoutMillis The maximum time in milliseconds a single diff may take, or a value less than or equal to 0
+	 *                      for no time limit (default)
+	 * @param maxElements   The maximum number of AST elements of each of the two types (see
+	 *                      {@link TypeFeatures#getElementCount()}), or a value less than or equal to 0 for no limit
+	 *                      (default)
+	 */
+	public void setBudget(long timeoutMillis, int maxElements) {
+		this.timeoutMillis = timeoutMillis;
+		this.maxElements = maxElements;
+		if (timeoutMillis > 0 && diffExecutor == null) {
+			diffExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+				Thread thread = new Thread(r, "ast-diff");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+	
+	/**
+	 * Returns the number of root operations of the diff between <code>type1</code> and <code>type2</code>. The diff is
+	 * only computed if it is not already cached. Note that the order of the types matters, i.e., the diff between
+	 * <code>type2</code> and <code>type1</code> is a different entry. If the diff exceeds the budget (see
+	 * {@link #setBudget(long, int)}), an approximation is returned instead.
+	 *
+	 * @param type1 The first type of the diff
+	 * @param type2 The second type of the diff
+	 * @return The number of root operations of the diff between <code>type1</code> and <code>type2</code>
+	 */
+	public int getRootOperations(TypeFeatures type1, TypeFeatures type2) {
+		Key key = new Key(type1, type2);
+		Integer operations = rootOperations.get(key);
+		if (operations == null) {
+			// Do not use computeIfAbsent, since this would block other threads that access the same bin of the map
+			// during the (expensive) diff computation
+			operations = computeRootOperations(key);
+			rootOperations.put(key, operations);
+		}
+		return operations;
+	}
+	
+	/**
+	 * Returns whether the (cached) diff between <code>type1</code> and <code>type2</code> was approximated, either
+	 * for the original or for the renamed types.
+	 *
+	 * @param type1 The first type of the diff
+	 * @param type2 The second type of the diff
+	 * @return Whether the diff between the original or the renamed types was approximated
+	 */
+	public boolean isApproximate(Type type1, Type type2) {
+		return approximated.contains(new Key(type1.getFeatures(false), type2.getFeatures(false))) ||
+				approximated.contains(new Key(type1.getFeatures(true), type2.getFeatures(true)));
+	}
+	
+	/**
+	 * Returns the total number of diffs that were approximated because they exceeded the budget.
+	 */
+	public long getApproximatedDiffs() {
+		return approximatedDiffs.get();
+	}
+	
+	public void logStatistics() {
+		if (timeoutMillis > 0 || maxElements > 0) {
+			LOGGER.info("AST diff budget: {} diffs approximated (timeout {} ms, max. {} elements)",
+					getApproximatedDiffs(), timeoutMillis, maxElements);
+		}
+	}
+	
+	private int computeRootOperations(Key key) {
+		TypeFeatures type1 = key.type1();
+		TypeFeatures type2 = key.type2();
+		if (maxElements > 0 && Math.max(type1.getElementCount(), type2.getElementCount()) > maxElements) {
+			LOGGER.debug("approximated diff between '{}' and '{}' ({} and {} elements)", type1.getQualifiedName(),
+					type2.getQualifiedName(), type1.getElementCount(), type2.getElementCount());
+			return approximate(key);
+		}
+		if (timeoutMillis <= 0) {
+			return diff(type1, type2);
+		}
+		if (timedOutTypes.contains(type1) || timedOutTypes.contains(type2)
+				|| runawayTypes.contains(type1) || runawayTypes.contains(type2)) {
+			LOGGER.debug("approximated diff between '{}' and '{}' (a previous diff timed out)", type1.getQualifiedName(),
+					type2.getQualifiedName());
+			return approximate(key);
+		}
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean abandoned = new AtomicBoolean();
+		Supplier<Integer> action = () -> {
+			// Abandoned while waiting for a thread or the locks, so the result is not needed anymore
+			if (abandoned.get()) {
+				return -1;
+			}
+			started.countDown();
+			try {
+				return diffWithoutLocks(type1, type2);
+			} finally {
+				if (!flatDiff) {
+					runawayTypes.remove(type1);
+					runawayTypes.remove(type2);
+				}
+			}
+		};
+		// Only count the diff as started once it holds the locks of both types
+		Future<Integer> diff = diffExecutor.submit(() -> flatDiff ? action.get() : withLocks(type1, type2, action));
+		try {
+			return diff.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			abandoned.set(true);
+			// Only prevents the diff from starting if it is still queued, a running diff cannot be stopped
+			diff.cancel(false);
+			if (started.getCount() == 0) {
+				// Only remember the (probably pathological) larger type, the diff did not just wait for a free thread
+				// or for the locks of its types
+				timedOutTypes.add(type1.getElementCount() >= type2.getElementCount() ? type1 : type2);
+				if (!flatDiff) {
+					// Both types stay locked until the diff finishes, so no other diff of them should wait for it
+					runawayTypes.add(type1);
+					runawayTypes.add(type2);
+					if (diff.isDone()) {
+						// Finished in the meantime, i.e., before the types were added
+						runawayTypes.remove(type1);
+						runawayTypes.remove(type2);
+					}
+				}
+			}
+			LOGGER.warn("approximated diff between '{}' and '{}' after timeout of {} ms", type1.getQualifiedName(),
+					type2.getQualifiedName(), timeoutMillis);
+			return approximate(key);
+		} catch (InterruptedException e) {
+			diff.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("diff was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException re) {
+				throw re;
+			}
+			if (e.getCause() instanceof Error error) {
+				throw error;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	private int diff(TypeFeatures type1, TypeFeatures type2) {
+		if (flatDiff) {
+			return FlatTreeDiff.rootOperations(type1.getFlatTree(), type2.getFlatTree());
+		}
+		return compare(comparator, type1, type2).getRootOperations().size();
+	}
+	
+	/**
+	 * Same as {@link #diff(TypeFeatures, TypeFeatures)}, but the caller must already hold the locks of both types (see
+	 * {@link #withLocks(Object, Object, Supplier)}) if the diff is computed with GumTree.
+	 */
+	private int diffWithoutLocks(TypeFeatures type1, TypeFeatures type2) {
+		if (flatDiff) {
+			return FlatTreeDiff.rootOperations(type1.getFlatTree(), type2.getFlatTree());
+		}
+		return comparator.compare(type1.getType(), type2.getType()).getRootOperations().size();
+	}
+	
+	/**
+	 * Computes the GumTree diff between <code>type1</code> and <code>type2</code> while holding the locks of both types,
+	 * so that no other diff that involves one of these types runs at the same time. This is required whenever the same
+	 * types are diffed by several threads, since GumTree modifies the metadata of the Spoon elements during a diff.
+	 *
+	 * @param comparator The comparator to compute the diff with
+	 * @param type1      The first type of the diff
+	 * @param type2      The second type of the diff
+	 * @return The diff between <code>type1</code> and <code>type2</code>
+	 */
+	public static Diff compare(AstComparator comparator, TypeFeatures type1, TypeFeatures type2) {
+		return withLocks(type1, type2, () -> comparator.compare(type1.getType(), type2.getType()));
+	}
+	
+	private static <T> T withLocks(Object lock1, Object lock2, Supplier<T> action) {
+		// Always acquire the locks in the same order to prevent deadlocks
+		int hash1 = System.identityHashCode(lock1);
+		int hash2 = System.identityHashCode(lock2);
+		if (hash1 > hash2) {
+			return withLocks(lock2, lock1, action);
+		}
+		if (hash1 == hash2 && lock1 != lock2) {
+			synchronized (TIE_LOCK) {
+				synchronized (lock1) {
+					synchronized (lock2) {
+						return action.get();
+					}
+				}
+			}
+		}
+		synchronized (lock1) {
+			synchronized (lock2) {
+				return action.get();
+			}
+		}
+	}
+	
+	private int approximate(Key key) {
+		approximated.add(key);
+		approximatedDiffs.incrementAndGet();
+		return key.type1().getNodeKindHistogram().distance(key.type2().getNodeKindHistogram());
+	}
+	
+	/**
+	 * Removes all cached diffs between any type of <code>types1</code> and any type of <code>types2</code> (both
+	 * original and renamed).
+	 *
+	 * @param types1 The first types of the diffs to remove
+	 * @param types2 The second types of the diffs to remove
+	 */
+	public void evict(List<Type> types1, List<Type> types2) {
+		for (Type type1 : types1) {
+			for (Type type2 : types2) {
+				Key originalKey = new Key(type1.getFeatures(false), type2.getFeatures(false));
+				Key renamedKey = new Key(type1.getFeatures(true), type2.getFeatures(true));
+				rootOperations.remove(originalKey);
+				rootOperations.remove(renamedKey);
+				approximated.remove(originalKey);
+				approximated.remove(renamedKey);
+			}
+		}
+	}
+	
+}
@@ -1,12 +1,13 @@
 package comparison.scoring;
 
+import ast.TypeFeatures;
 import gumtree.spoon.AstComparator;
 import gumtree.spoon.diff.Diff;
-import spoon.reflect.declaration.CtType;
 
 public class ASTDiffScorer extends OriginalAndRenamedScorer {
 	
 	private final AstComparator comparator;
+	private final ASTDiffCache diffCache;
 	
 	public ASTDiffScorer(boolean useRenamed) {
 		this(useRenamed, new AstComparator());
@@ -15,11 +16,27 @@ public class ASTDiffScorer extends OriginalAndRenamedScorer {
 	public ASTDiffScorer(boolean useRenamed, AstComparator comparator) {
 		super(useRenamed);
 		this.comparator = comparator;
+		diffCache = null;
+	}
+	
+	/**
+	 * Creates a new instance that gets its diffs from the specified <code>diffCache</code>.
+	 *
+	 * @param useRenamed Whether to use the renamed types
+	 * @param diffCache  The cache to get the diffs from
+	 */
+	public ASTDiffScorer(boolean useRenamed, ASTDiffCache diffCache) {
+		super(useRenamed);
+		comparator = null;
+		this.diffCache = diffCache;
 	}
 	
 	@Override
-	protected double computeComparisonScore(CtType<?> type1, CtType<?> type2) {
-		Diff typeDiff = comparator.compare(type1, type2);
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
+		if (diffCache != null) {
+			return diffCache.getRootOperations(type1, type2);
+		}
+		Diff typeDiff = ASTDiffCache.compare(comparator, type1, type2);
 		return typeDiff.getRootOperations().size();
 	}
 	
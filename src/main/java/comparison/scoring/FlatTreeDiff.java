@@ -0,0 +1,391 @@
+package comparison.scoring;
+
+import ast.FlatTree;
+
+import java.util.*;
+
+/**
+ * Diff of two {@link FlatTree}s that follows the matching algorithm of GumTree (Falleri et al., "Fine-grained and
+ * Accurate Source Code Differencing", 2014), which is also used by {@link gumtree.spoon.AstComparator}, but runs on
+ * the flat arrays of the trees instead of Spoon and GumTree objects:
+ * <ol>
+ *     <li>Top-down: Identical subtrees (see {@link FlatTree#isIsomorphic(int, FlatTree, int)}) are matched from the
+ *     highest to the lowest, down to a minimum height. If a subtree has multiple identical candidates, the pairs whose
+ *     parents are most similar are matched first.</li>
+ *     <li>Bottom-up: Unmatched inner nodes are matched to the unmatched node of the same kind in the other tree with
+ *     which they share the most matched descendants (dice coefficient), if this similarity is large enough. The
+ *     unmatched children of such a pair (and of the roots) are then matched recursively if they have equal labels (in
+ *     order), or if their kind is unique among the remaining children of both nodes.</li>
+ * </ol>
+ * The number of root operations (see {@link #rootOperations(FlatTree, FlatTree)}) is derived from the matching like
+ * the edit script of GumTree. The result is close to, but not necessarily the same as the number of root operations
+ * of {@link gumtree.spoon.AstComparator}, since the trees of {@link FlatTree} contain all Spoon elements and GumTree
+ * uses some additional heuristics (e.g., when recovering matches of small subtrees). In particular, GumTree matches
+ * the descendants of a statement that was replaced by a statement of another kind (e.g., a for-each loop by a
+ * <code>for</code> loop) and moves them, while they are only deleted and inserted here, which results in fewer root
+ * operations. For local edits (e.g., inserted, deleted, moved or updated statements), the difference is at most one.
+ * <p>
+ * This class is stateless and thus thread-safe.
+ */
+public class FlatTreeDiff {
+	
+	/**
+	 * The minimum height of subtrees that are matched top-down, so that single leaves (e.g., all occurrences of the
+	 * same variable) are not matched before their context.
+	 */
+	private static final int MIN_HEIGHT = 2;
+	/**
+	 * The minimum dice coefficient of two inner nodes that are matched bottom-up.
+	 */
+	private static final double MIN_DICE = 0.5;
+	/**
+	 * The maximum size of the table of the longest common subsequence of the children of two nodes, beyond which the
+	 * children are only matched by their kinds.
+	 */
+	private static final long MAX_LCS_CELLS = 1_000_000;
+	
+	private FlatTreeDiff() {
+	}
+	
+	/**
+	 * Returns the number of root operations that are needed to transform <code>tree1</code> into <code>tree2</code>,
+	 * which is the sum of:
+	 * <ul>
+	 *     <li>Deleted subtrees, i.e., unmatched nodes of <code>tree1</code> whose parent is matched</li>
+	 *     <li>Inserted subtrees, i.e., unmatched nodes of <code>tree2</code> whose parent is matched</li>
+	 *     <li>Updated nodes, i.e., matched nodes with different labels</li>
+	 *     <li>Moved subtrees, i.e., matched nodes whose parents are not matched to each other, and matched nodes that
+	 *     were reordered within their matched parents (all that are not part of the longest common subsequence of the
+	 *     children)</li>
+	 * </ul>
+	 *
+	 * @param tree1 The source tree
+	 * @param tree2 The destination tree
+	 * @return The number of root operations of the diff between <code>tree1</code> and <code>tree2</code>
+	 */
+	public static int rootOperations(FlatTree tree1, FlatTree tree2) {
+		int[] mapping1 = new int[tree1.size()];
+		int[] mapping2 = new int[tree2.size()];
+		Arrays.fill(mapping1, -1);
+		Arrays.fill(mapping2, -1);
+		matchTopDown(tree1, tree2, mapping1, mapping2);
+		matchBottomUp(tree1, tree2, mapping1, mapping2);
+		
+		int operations = 0;
+		for (int node = 0; node < tree1.size(); node++) {
+			int parent = tree1.getParent(node);
+			if (mapping1[node] < 0) {
+				// Deleted subtree root (or the deleted root itself)
+				if (parent < 0 || mapping1[parent] >= 0) {
+					operations++;
+				}
+				continue;
+			}
+			int partner = mapping1[node];
+			if (tree1.getLabel(node) != tree2.getLabel(partner)) {
+				operations++;
+			}
+			if (parent >= 0 && (tree2.getParent(partner) < 0 || mapping1[parent] != tree2.getParent(partner))) {
+				operations++;
+			}
+		}
+		for (int node = 0; node < tree2.size(); node++) {
+			int parent = tree2.getParent(node);
+			if (mapping2[node] < 0 && (parent < 0 || mapping2[parent] >= 0)) {
+				operations++;
+			}
+		}
+		// Reordered children of matched parents
+		for (int node = 0; node < tree1.size(); node++) {
+			if (mapping1[node] >= 0) {
+				operations += countReorderedChildren(tree1, node, tree2, mapping1[node], mapping1);
+			}
+		}
+		return operations;
+	}
+	
+	private static void matchTopDown(FlatTree tree1, FlatTree tree2, int[] mapping1, int[] mapping2) {
+		List<List<Integer>> byHeight1 = groupByHeight(tree1);
+		List<List<Integer>> byHeight2 = groupByHeight(tree2);
+		for (int height = Math.min(byHeight1.size(), byHeight2.size()) - 1; height >= MIN_HEIGHT; height--) {
+			// All unmatched nodes of this height, grouped by their hash (nodes of matched subtrees are matched, too)
+			Map<Long, List<Integer>> candidates1 = groupUnmatchedByHash(tree1, byHeight1.get(height), mapping1);
+			Map<Long, List<Integer>> candidates2 = groupUnmatchedByHash(tree2, byHeight2.get(height), mapping2);
+			List<int[]> ambiguous = new ArrayList<>();
+			for (Map.Entry<Long, List<Integer>> entry : candidates1.entrySet()) {
+				List<Integer> nodes2 = candidates2.get(entry.getKey());
+				if (nodes2 == null) {
+					continue;
+				}
+				List<Integer> nodes1 = entry.getValue();
+				for (int node1 : nodes1) {
+					for (int node2 : nodes2) {
+						if (tree1.isIsomorphic(node1, tree2, node2)) {
+							if (nodes1.size() == 1 && nodes2.size() == 1) {
+								matchSubtrees(tree1, node1, tree2, node2, mapping1, mapping2);
+							} else {
+								ambiguous.add(new int[]{node1, node2});
+							}
+						}
+					}
+				}
+			}
+			if (!ambiguous.isEmpty()) {
+				// Prefer the pairs with the most similar parents, and then the ones at the most similar positions
+				Map<int[], Double> parentDice = new IdentityHashMap<>();
+				// Many ambiguous pairs share the same parents (e.g., repeated statements of the same block)
+				Map<Long, Double> diceByParents = new HashMap<>();
+				for (int[] pair : ambiguous) {
+					int parent1 = tree1.getParent(pair[0]);
+					int parent2 = tree2.getParent(pair[1]);
+					parentDice.put(pair, diceByParents.computeIfAbsent(((long) parent1 << 32) | (parent2 & 0xffffffffL),
+							k -> dice(tree1, parent1, tree2, parent2, mapping1)));
+				}
+				ambiguous.sort(Comparator.comparingDouble((int[] pair) -> parentDice.get(pair)).reversed()
+						.thenComparingInt(pair -> Math.abs(pair[0] - pair[1])));
+				for (int[] pair : ambiguous) {
+					if (mapping1[pair[0]] < 0 && mapping2[pair[1]] < 0) {
+						matchSubtrees(tree1, pair[0], tree2, pair[1], mapping1, mapping2);
+					}
+				}
+			}
+		}
+	}
+	
+	private static List<List<Integer>> groupByHeight(FlatTree tree) {
+		List<List<Integer>> byHeight = new ArrayList<>();
+		for (int node = 0; node < tree.size(); node++) {
+			int height = tree.getHeight(node);
+			while (byHeight.size() <= height) {
+				byHeight.add(new ArrayList<>());
+			}
+			byHeight.get(height).add(node);
+		}
+		return byHeight;
+	}
+	
+	private static Map<Long, List<Integer>> groupUnmatchedByHash(FlatTree tree, List<Integer> nodes, int[] mapping) {
+		Map<Long, List<Integer>> byHash = new HashMap<>();
+		for (int node : nodes) {
+			if (mapping[node] < 0) {
+				byHash.computeIfAbsent(tree.getHash(node), h -> new ArrayList<>()).add(node);
+			}
+		}
+		return byHash;
+	}
+	
+	/**
+	 * Matches all nodes of two isomorphic subtrees, which have the same pre-order structure.
+	 */
+	private static void matchSubtrees(FlatTree tree1, int node1, FlatTree tree2, int node2, int[] mapping1, int[] mapping2) {
+		for (int i = 0; i < tree1.getSubtreeSize(node1); i++) {
+			mapping1[node1 + i] = node2 + i;
+			mapping2[node2 + i] = node1 + i;
+		}
+	}
+	
+	private static void matchBottomUp(FlatTree tree1, FlatTree tree2, int[] mapping1, int[] mapping2) {
+		// Post-order, i.e., children before their parents (reverse pre-order also has this property)
+		for (int node1 = tree1.size() - 1; node1 >= 0; node1--) {
+			if (mapping1[node1] >= 0) {
+				continue;
+			}
+			if (node1 == 0) {
+				// The roots are always matched if they are of the same kind
+				if (mapping2[0] < 0 && tree1.getKind(0) == tree2.getKind(0)) {
+					match(0, 0, mapping1, mapping2);
+					recover(tree1, 0, tree2, 0, mapping1, mapping2);
+				}
+				continue;
+			}
+			if (tree1.getFirstChild(node1) < 0) {
+				continue;
+			}
+			int best = -1;
+			double bestDice = MIN_DICE;
+			for (int candidate : findCandidates(tree1, node1, tree2, mapping1, mapping2)) {
+				double dice = dice(tree1, node1, tree2, candidate, mapping1);
+				if (dice > bestDice) {
+					best = candidate;
+					bestDice = dice;
+				}
+			}
+			if (best >= 0) {
+				match(node1, best, mapping1, mapping2);
+				recover(tree1, node1, tree2, best, mapping1, mapping2);
+			}
+		}
+	}
+	
+	/**
+	 * Returns all unmatched nodes of <code>tree2</code> with the same kind as <code>node1</code> that are ancestors of
+	 * the partners of the matched descendants of <code>node1</code>.
+	 */
+	private static Set<Integer> findCandidates(FlatTree tree1, int node1, FlatTree tree2, int[] mapping1, int[] mapping2) {
+		Set<Integer> candidates = new LinkedHashSet<>();
+		Set<Integer> visited = new HashSet<>();
+		for (int descendant = node1 + 1; descendant < tree1.getSubtreeEnd(node1); descendant++) {
+			if (mapping1[descendant] < 0) {
+				continue;
+			}
+			// Ancestors that were already visited have all of their ancestors visited as well
+			for (int ancestor = tree2.getParent(mapping1[descendant]); ancestor >= 0 && visited.add(ancestor);
+					ancestor = tree2.getParent(ancestor)) {
+				if (mapping2[ancestor] < 0 && tree2.getKind(ancestor) == tree1.getKind(node1)) {
+					candidates.add(ancestor);
+				}
+			}
+		}
+		return candidates;
+	}
+	
+	/**
+	 * Returns the dice coefficient of the descendants of <code>node1</code> and <code>node2</code>, i.e., twice the
+	 * number of matched descendants of <code>node1</code> whose partners are descendants of <code>node2</code>,
+	 * divided by the number of descendants of both nodes. If any node is -1 (the parent of a root), 0 is returned.
+	 */
+	private static double dice(FlatTree tree1, int node1, FlatTree tree2, int node2, int[] mapping1) {
+		if (node1 < 0 || node2 < 0) {
+			return 0;
+		}
+		int descendants = tree1.getSubtreeSize(node1) - 1 + tree2.getSubtreeSize(node2) - 1;
+		if (descendants == 0) {
+			return 0;
+		}
+		int common = 0;
+		for (int descendant = node1 + 1; descendant < tree1.getSubtreeEnd(node1); descendant++) {
+			int partner = mapping1[descendant];
+			if (partner > node2 && tree2.isInSubtree(partner, node2)) {
+				common++;
+			}
+		}
+		return 2.0 * common / descendants;
+	}
+	
+	/**
+	 * Matches the unmatched children of two matched nodes and continues recursively with the newly matched children:
+	 * First, the children with equal labels are matched in order (longest common subsequence), and then the remaining
+	 * children whose kind occurs exactly once among the remaining children of both nodes.
+	 */
+	private static void recover(FlatTree tree1, int node1, FlatTree tree2, int node2, int[] mapping1, int[] mapping2) {
+		List<Integer> children1 = getUnmatchedChildren(tree1, node1, mapping1);
+		List<Integer> children2 = getUnmatchedChildren(tree2, node2, mapping2);
+		if (children1.isEmpty() || children2.isEmpty()) {
+			return;
+		}
+		List<int[]> matched = new ArrayList<>();
+		if ((long) children1.size() * children2.size() <= MAX_LCS_CELLS) {
+			for (int[] pair : longestCommonLabels(tree1, children1, tree2, children2)) {
+				match(pair[0], pair[1], mapping1, mapping2);
+				matched.add(pair);
+			}
+		}
+		Map<Integer, List<Integer>> byKind1 = groupUnmatchedByKind(tree1, children1, mapping1);
+		Map<Integer, List<Integer>> byKind2 = groupUnmatchedByKind(tree2, children2, mapping2);
+		for (Map.Entry<Integer, List<Integer>> entry : byKind1.entrySet()) {
+			List<Integer> kindChildren2 = byKind2.get(entry.getKey());
+			if (entry.getValue().size() == 1 && kindChildren2 != null && kindChildren2.size() == 1) {
+				int child1 = entry.getValue().get(0);
+				int child2 = kindChildren2.get(0);
+				match(child1, child2, mapping1, mapping2);
+				matched.add(new int[]{child1, child2});
+			}
+		}
+		for (int[] pair : matched) {
+			recover(tree1, pair[0], tree2, pair[1], mapping1, mapping2);
+		}
+	}
+	
+	private static List<Integer> getUnmatchedChildren(FlatTree tree, int node, int[] mapping) {
+		List<Integer> children = new ArrayList<>();
+		for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+			if (mapping[child] < 0) {
+				children.add(child);
+			}
+		}
+		return children;
+	}
+	
+	/**
+	 * Returns the pairs of the longest common subsequence of <code>children1</code> and <code>children2</code>, where
+	 * two children are equal if their labels are equal.
+	 */
+	private static List<int[]> longestCommonLabels(FlatTree tree1, List<Integer> children1, FlatTree tree2, List<Integer> children2) {
+		int n = children1.size();
+		int m = children2.size();
+		// lengths[i][j] = length of the LCS of the suffixes starting at i and j
+		int[][] lengths = new int[n + 1][m + 1];
+		for (int i = n - 1; i >= 0; i--) {
+			for (int j = m - 1; j >= 0; j--) {
+				if (tree1.getLabel(children1.get(i)) == tree2.getLabel(children2.get(j))) {
+					lengths[i][j] = lengths[i + 1][j + 1] + 1;
+				} else {
+					lengths[i][j] = Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+				}
+			}
+		}
+		List<int[]> pairs = new ArrayList<>();
+		int i = 0;
+		int j = 0;
+		while (i < n && j < m) {
+			if (tree1.getLabel(children1.get(i)) == tree2.getLabel(children2.get(j))) {
+				pairs.add(new int[]{children1.get(i), children2.get(j)});
+				i++;
+				j++;
+			} else if (lengths[i + 1][j] >= lengths[i][j + 1]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return pairs;
+	}
+	
+	private static Map<Integer, List<Integer>> groupUnmatchedByKind(FlatTree tree, List<Integer> nodes, int[] mapping) {
+		Map<Integer, List<Integer>> byKind = new LinkedHashMap<>();
+		for (int node : nodes) {
+			if (mapping[node] < 0) {
+				byKind.computeIfAbsent(tree.getKind(node), k -> new ArrayList<>()).add(node);
+			}
+		}
+		return byKind;
+	}
+	
+	private static void match(int node1, int node2, int[] mapping1, int[] mapping2) {
+		mapping1[node1] = node2;
+		mapping2[node2] = node1;
+	}
+	
+	/**
+	 * Returns the number of children of <code>node1</code> that are matched to children of <code>node2</code> but are
+	 * not part of the longest common subsequence of these children, i.e., the number of children that must be moved
+	 * to restore the order of <code>node2</code>.
+	 */
+	private static int countReorderedChildren(FlatTree tree1, int node1, FlatTree tree2, int node2, int[] mapping1) {
+		// The positions (in tree2) of the children of node1 that are matched to children of node2, in the order of node1
+		List<Integer> partners = new ArrayList<>();
+		for (int child = tree1.getFirstChild(node1); child >= 0; child = tree1.getNextSibling(child)) {
+			int partner = mapping1[child];
+			if (partner >= 0 && tree2.getParent(partner) == node2) {
+				partners.add(partner);
+			}
+		}
+		if (partners.size() < 2) {
+			return 0;
+		}
+		// Both sequences contain the same children, so their LCS is the longest increasing subsequence of the partners
+		// (patience sorting)
+		List<Integer> tails = new ArrayList<>();
+		for (int partner : partners) {
+			int index = Collections.binarySearch(tails, partner);
+			int insertion = -index - 1;
+			if (insertion == tails.size()) {
+				tails.add(partner);
+			} else {
+				tails.set(insertion, partner);
+			}
+		}
+		return partners.size() - tails.size();
+	}
+	
+}
@@ -0,0 +1,21 @@
+package comparison.scoring;
+
+import ast.NodeKindHistogram;
+import ast.TypeFeatures;
+
+/**
+ * Cheap structural scorer that computes the distance between the node kind histograms of two types (see
+ * {@link NodeKindHistogram#distance(NodeKindHistogram)}).
+ */
+public class NodeKindHistogramScorer extends OriginalAndRenamedScorer {
+	
+	public NodeKindHistogramScorer(boolean useRenamed) {
+		super(useRenamed);
+	}
+	
+	@Override
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
+		return type1.getNodeKindHistogram().distance(type2.getNodeKindHistogram());
+	}
+	
+}
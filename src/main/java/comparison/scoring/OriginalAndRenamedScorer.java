@@ -1,11 +1,13 @@
 package comparison.scoring;
 
 import ast.Type;
-import spoon.reflect.declaration.CtType;
+import ast.TypeFeatures;
 
 /**
  * Scorer that supports computing a score for both the original type ({@link Type#original()}) and the renamed type
- * ({@link Type#renamed()}).
+ * ({@link Type#renamed()}). The score is computed on the (memoized) {@link TypeFeatures} of the respective type (see
+ * {@link Type#getFeatures(boolean)}), so expensive derived values like the printed source code or the number of
+ * elements are not recomputed for every single comparison.
  */
 public abstract class OriginalAndRenamedScorer implements TypeComparisonScorer {
 	
@@ -17,12 +19,9 @@ public abstract class OriginalAndRenamedScorer implements TypeComparisonScorer {
 	
 	@Override
 	public double computeComparisonScore(Type type1, Type type2) {
-		if (useRenamed) {
-			return computeComparisonScore(type1.renamed(), type2.renamed());
-		}
-		return computeComparisonScore(type1.original(), type2.original());
+		return computeComparisonScore(type1.getFeatures(useRenamed), type2.getFeatures(useRenamed));
 	}
 	
-	protected abstract double computeComparisonScore(CtType<?> type1, CtType<?> type2);
+	protected abstract double computeComparisonScore(TypeFeatures type1, TypeFeatures type2);
 	
 }
@@ -1,7 +1,6 @@
 package comparison.scoring.metrics;
 
-import ast.ASTUtil;
-import spoon.reflect.declaration.CtType;
+import ast.TypeFeatures;
 
 public class ASTCountDiffMetricScorer extends MetricScorer {
 	
@@ -10,9 +9,9 @@ public class ASTCountDiffMetricScorer extends MetricScorer {
 	}
 	
 	@Override
-	protected double computeComparisonScore(CtType<?> type1, CtType<?> type2) {
-		int count1 = ASTUtil.countElements(type1);
-		int count2 = ASTUtil.countElements(type2);
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
+		int count1 = type1.getElementCount();
+		int count2 = type2.getElementCount();
 		int countDiff = Math.abs(count1 - count2);
 		return (double) countDiff / Math.max(count1, count2);
 	}
@@ -1,13 +1,14 @@
 package comparison.scoring.metrics;
 
-import ast.ASTUtil;
+import ast.TypeFeatures;
+import comparison.scoring.ASTDiffCache;
 import gumtree.spoon.AstComparator;
 import gumtree.spoon.diff.Diff;
-import spoon.reflect.declaration.CtType;
 
 public class ASTDiffMetricScorer extends MetricScorer {
 	
 	private final AstComparator comparator;
+	private final ASTDiffCache diffCache;
 	
 	public ASTDiffMetricScorer(boolean useRenamed) {
 		this(useRenamed, new AstComparator());
@@ -16,15 +17,38 @@ public class ASTDiffMetricScorer extends MetricScorer {
 	public ASTDiffMetricScorer(boolean useRenamed, AstComparator comparator) {
 		super(useRenamed);
 		this.comparator = comparator;
+		diffCache = null;
+	}
+	
+	/**
+	 * Creates a new instance that gets its diffs from the specified <code>diffCache</code>.
+	 *
+	 * @param useRenamed Whether to use the renamed types
+	 * @param diffCache  The cache to get the diffs from
+	 */
+	public ASTDiffMetricScorer(boolean useRenamed, ASTDiffCache diffCache) {
+		super(useRenamed);
+		comparator = null;
+		this.diffCache = diffCache;
 	}
 	
 	@Override
-	protected double computeComparisonScore(CtType<?> type1, CtType<?> type2) {
-		Diff typeDiff = comparator.compare(type1, type2);
-		int diff = typeDiff.getRootOperations().size();
-		int count1 = ASTUtil.countElements(type1);
-		int count2 = ASTUtil.countElements(type2);
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
+		int diff;
+		if (diffCache != null) {
+			diff = diffCache.getRootOperations(type1, type2);
+		} else {
+			Diff typeDiff = ASTDiffCache.compare(comparator, type1, type2);
+			diff = typeDiff.getRootOperations().size();
+		}
+		int count1 = type1.getElementCount();
+		int count2 = type2.getElementCount();
 		return (double) diff / Math.max(count1, count2);
 	}
 	
+	@Override
+	public int getCost() {
+		return COST_TREE_DIFF;
+	}
+	
 }
@@ -0,0 +1,167 @@
+package comparison.scoring.metrics;
+
+import ast.TypeFeatures;
+import util.Hashing;
+
+import java.util.*;
+
+/**
+ * Metric scorer that computes the Greedy String Tiling distance of the token sequences of two types (see
+ * {@link TypeFeatures#getTokens()}), which is the approach of JPlag (Prechelt et al., "Finding Plagiarisms among a Set
+ * of Programs with JPlag", 2002): The longest common substrings of unmarked tokens of both sequences are repeatedly
+ * marked as tiles, until no common substring of at least the minimum match length is left. The distance is then
+ * <code>1 - 2 * coverage / (length1 + length2)</code>, where <code>coverage</code> is the number of tokens covered by
+ * tiles. Since tiles can occur in any order, reordered methods or statements do not increase the distance.
+ * <p>
+ * The tiles are found with the Running Karp-Rabin variant (Wise, "Running Karp-Rabin Matching and Greedy String
+ * Tiling", 1993), which hashes all substrings of the current search length, so its time is close to linear in the
+ * number of tokens in practice.
+ */
+public class GreedyStringTilingMetricScorer extends MetricScorer {
+	
+	/**
+	 * The search length of the first iteration, which is increased right away if longer matches are found.
+	 */
+	private static final int INITIAL_SEARCH_LENGTH = 20;
+	
+	private final int minMatchLength;
+	
+	/**
+	 * Creates a new instance with a minimum match length of 9 tokens (the default of JPlag for Java).
+	 *
+	 * @param useRenamed Whether to use the renamed types
+	 */
+	public GreedyStringTilingMetricScorer(boolean useRenamed) {
+		this(useRenamed, 9);
+	}
+	
+	/**
+	 * Creates a new instance using the specified arguments.
+	 *
+	 * @param useRenamed     Whether to use the renamed types
+	 * @param minMatchLength The minimum number of tokens of a tile. Shorter common substrings are ignored
+	 */
+	public GreedyStringTilingMetricScorer(boolean useRenamed, int minMatchLength) {
+		super(useRenamed);
+		if (minMatchLength < 1) {
+			throw new IllegalArgumentException("minMatchLength must be at least 1");
+		}
+		this.minMatchLength = minMatchLength;
+	}
+	
+	@Override
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
+		int[] tokens1 = type1.getTokens();
+		int[] tokens2 = type2.getTokens();
+		boolean[] marked1 = new boolean[tokens1.length];
+		boolean[] marked2 = new boolean[tokens2.length];
+		int coverage = 0;
+		int searchLength = Math.max(minMatchLength, INITIAL_SEARCH_LENGTH);
+		while (true) {
+			List<int[]> matches = new ArrayList<>();
+			int longest = scanPattern(tokens1, marked1, tokens2, marked2, searchLength, matches);
+			if (longest > 2 * searchLength) {
+				// Scan again with the longer search length, which skips all (redundant) shorter matches
+				searchLength = longest;
+				continue;
+			}
+			// Mark the longest matches first, skipping all matches that overlap with already marked tiles
+			matches.sort(Comparator.comparingInt((int[] match) -> match[2]).reversed());
+			for (int[] match : matches) {
+				if (isUnmarked(marked1, match[0], match[2]) && isUnmarked(marked2, match[1], match[2])) {
+					Arrays.fill(marked1, match[0], match[0] + match[2], true);
+					Arrays.fill(marked2, match[1], match[1] + match[2], true);
+					coverage += match[2];
+				}
+			}
+			if (searchLength > 2 * minMatchLength) {
+				searchLength /= 2;
+			} else if (searchLength > minMatchLength) {
+				searchLength = minMatchLength;
+			} else if (matches.isEmpty()) {
+				break;
+			}
+		}
+		return 1 - 2.0 * coverage / (tokens1.length + tokens2.length);
+	}
+	
+	/**
+	 * Adds all maximal matches of unmarked tokens with a length of at least <code>searchLength</code> to
+	 * <code>matches</code> (as arrays of start index in <code>tokens1</code>, start index in <code>tokens2</code> and
+	 * length) and returns the length of the longest one. Stops early if a match that is longer than twice the
+	 * <code>searchLength</code> is found.
+	 */
+	private static int scanPattern(int[] tokens1, boolean[] marked1, int[] tokens2, boolean[] marked2, int searchLength,
+			List<int[]> matches) {
+		// Hash all unmarked substrings of tokens2 with the search length
+		Map<Long, List<Integer>> hashes = new HashMap<>();
+		forEachUnmarkedSubstring(tokens2, marked2, searchLength, (start, hash) ->
+				hashes.computeIfAbsent(hash, x -> new ArrayList<>()).add(start));
+		int[] longest = {0};
+		forEachUnmarkedSubstring(tokens1, marked1, searchLength, (start1, hash) -> {
+			if (longest[0] > 2 * searchLength) {
+				return;
+			}
+			for (int start2 : hashes.getOrDefault(hash, List.of())) {
+				// Verify the match (hash collisions) and extend it as far as possible
+				int length = 0;
+				while (start1 + length < tokens1.length && start2 + length < tokens2.length &&
+						!marked1[start1 + length] && !marked2[start2 + length] &&
+						tokens1[start1 + length] == tokens2[start2 + length]) {
+					length++;
+				}
+				if (length >= searchLength) {
+					matches.add(new int[]{start1, start2, length});
+					longest[0] = Math.max(longest[0], length);
+				}
+			}
+		});
+		return longest[0];
+	}
+	
+	private interface SubstringConsumer {
+		void accept(int start, long hash);
+	}
+	
+	/**
+	 * Passes the start index and the Karp-Rabin hash of every substring of <code>tokens</code> with the specified
+	 * <code>length</code> that does not contain any marked token to <code>consumer</code>.
+	 */
+	private static void forEachUnmarkedSubstring(int[] tokens, boolean[] marked, int length, SubstringConsumer consumer) {
+		long highestPower = Hashing.highestPower(length);
+		long hash = 0;
+		int unmarked = 0; // Number of consecutive unmarked tokens up to (and including) index i
+		for (int i = 0; i < tokens.length; i++) {
+			if (marked[i]) {
+				hash = 0;
+				unmarked = 0;
+				continue;
+			}
+			if (unmarked == length) {
+				hash = Hashing.roll(hash, tokens[i - length], tokens[i], highestPower);
+			} else {
+				unmarked++;
+				hash = Hashing.append(hash, tokens[i]);
+			}
+			if (unmarked == length) {
+				consumer.accept(i - length + 1, hash);
+			}
+		}
+	}
+	
+	private static boolean isUnmarked(boolean[] marked, int start, int length) {
+		for (int i = start; i < start + length; i++) {
+			if (marked[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public int getCost() {
+		// Close to linear in practice, but the worst case is not
+		return COST_QUADRATIC;
+	}
+	
+}
@@ -8,5 +8,10 @@ public class JaccardMetricScorer extends SimilarityMetricScorer {
 		super(useRenamed, new JaccardSimilarity());
 	}
 	
+	@Override
+	public int getCost() {
+		return COST_LINEAR;
+	}
+	
 }
 
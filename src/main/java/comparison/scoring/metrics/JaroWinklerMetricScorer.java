@@ -8,4 +8,9 @@ public class JaroWinklerMetricScorer extends SimilarityMetricScorer {
 		super(useRenamed, new JaroWinklerSimilarity());
 	}
 	
+	@Override
+	public int getCost() {
+		return COST_QUADRATIC;
+	}
+	
 }
\ No newline at end of file
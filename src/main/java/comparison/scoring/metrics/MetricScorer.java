@@ -1,5 +1,6 @@
 package comparison.scoring.metrics;
 
+import ast.TypeFeatures;
 import comparison.scoring.OriginalAndRenamedScorer;
 
 /**
@@ -32,6 +33,23 @@ import comparison.scoring.OriginalAndRenamedScorer;
  */
 public abstract class MetricScorer extends OriginalAndRenamedScorer {
 	
+	/**
+	 * Cost of scores that only take constant time per comparison (after the features of both types are memoized).
+	 */
+	public static final int COST_CONSTANT = 0;
+	/**
+	 * Cost of scores that take time linear in the size of the two types.
+	 */
+	public static final int COST_LINEAR = 1;
+	/**
+	 * Cost of scores that take time quadratic in the size of the two types (at least in the worst case).
+	 */
+	public static final int COST_QUADRATIC = 2;
+	/**
+	 * Cost of scores that require a tree diff of the two types, which is the most expensive computation by far.
+	 */
+	public static final int COST_TREE_DIFF = 3;
+	
 	private String defaultName;
 	
 	public MetricScorer(boolean useRenamed) {
@@ -53,4 +71,16 @@ public abstract class MetricScorer extends OriginalAndRenamedScorer {
 		return (useRenamed ? "Renamed" : "") + getBaseName();
 	}
 	
+	/**
+	 * Returns the relative cost of computing a single score, which is used to compute cheap metrics first if the
+	 * remaining metrics might not be needed (see {@link comparison.Comparer#setEarlyExitDetection}). Only the order of
+	 * the costs of different metric scorers matters. The default is {@link #COST_CONSTANT}, so subclasses that do more
+	 * work than looking up memoized features should override this method.
+	 *
+	 * @return The relative cost of {@link #computeComparisonScore(TypeFeatures, TypeFeatures)}
+	 */
+	public int getCost() {
+		return COST_CONSTANT;
+	}
+	
 }
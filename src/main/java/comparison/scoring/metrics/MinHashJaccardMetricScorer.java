@@ -0,0 +1,106 @@
+package comparison.scoring.metrics;
+
+import ast.TypeFeatures;
+import util.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * Metric scorer that estimates the Jaccard distance (<code>1 - Jaccard similarity</code>) of the sets of token n-grams
+ * of two types (see {@link TypeFeatures#getTokens()}). Unlike {@link JaccardMetricScorer}, which compares the sets of
+ * characters of the printed source code, the n-grams capture the structure of the code, and the sets are not
+ * compared exactly but estimated with MinHash sketches: Each n-gram is hashed, and the sketch of a type consists of
+ * the <code>k</code> smallest distinct hashes (bottom-k sketch). The Jaccard similarity is then estimated as the
+ * fraction of the <code>k</code> smallest hashes of the union of two sketches that are contained in both sketches.
+ * <p>
+ * Computing a sketch takes time linear in the number of tokens (times <code>log k</code>), and it is memoized per type
+ * (see {@link TypeFeatures#getDerivedFeature(Object, java.util.function.Function)}), so every comparison only takes
+ * time linear in <code>k</code>, regardless of the size of the types.
+ */
+public class MinHashJaccardMetricScorer extends MetricScorer {
+	
+	private record SketchSettings(int n, int k) {
+	}
+	
+	private final SketchSettings settings;
+	
+	/**
+	 * Creates a new instance with n-grams of 5 tokens and sketches of 128 hashes.
+	 *
+	 * @param useRenamed Whether to use the renamed types
+	 */
+	public MinHashJaccardMetricScorer(boolean useRenamed) {
+		this(useRenamed, 5, 128);
+	}
+	
+	/**
+	 * Creates a new instance using the specified arguments.
+	 *
+	 * @param useRenamed Whether to use the renamed types
+	 * @param n          The number of consecutive tokens of an n-gram
+	 * @param k          The number of hashes of a sketch. The larger, the more accurate the estimation
+	 */
+	public MinHashJaccardMetricScorer(boolean useRenamed, int n, int k) {
+		super(useRenamed);
+		if (n < 1 || k < 1) {
+			throw new IllegalArgumentException("n and k must be at least 1");
+		}
+		settings = new SketchSettings(n, k);
+	}
+	
+	@Override
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
+		long[] sketch1 = type1.getDerivedFeature(settings, this::computeSketch);
+		long[] sketch2 = type2.getDerivedFeature(settings, this::computeSketch);
+		// Merge the sorted sketches until the k smallest hashes of the union were seen
+		int i = 0;
+		int j = 0;
+		int union = 0;
+		int shared = 0;
+		while (union < settings.k() && i < sketch1.length && j < sketch2.length) {
+			if (sketch1[i] == sketch2[j]) {
+				shared++;
+				i++;
+				j++;
+			} else if (sketch1[i] < sketch2[j]) {
+				i++;
+			} else {
+				j++;
+			}
+			union++;
+		}
+		// Remaining hashes of the union can only be contained in one of the two sketches
+		union = Math.min(settings.k(), union + (sketch1.length - i) + (sketch2.length - j));
+		return 1 - (double) shared / union;
+	}
+	
+	/**
+	 * Returns the sorted bottom-k sketch of the token n-grams of <code>type</code>.
+	 */
+	private long[] computeSketch(TypeFeatures type) {
+		int[] tokens = type.getTokens();
+		int n = Math.min(settings.n(), tokens.length);
+		int k = settings.k();
+		// Sorted array of the k smallest distinct hashes seen so far (insertions get rare quickly, as the bound shrinks)
+		long[] smallest = new long[k];
+		int size = 0;
+		for (int start = 0; start + n <= tokens.length; start++) {
+			// Mixed, since the sketch selects minimum hashes
+			long hash = Hashing.mix(Hashing.hash(tokens, start, n));
+			if (size == k && hash >= smallest[k - 1]) {
+				continue;
+			}
+			int index = Arrays.binarySearch(smallest, 0, size, hash);
+			if (index >= 0) {
+				continue; // Already contained (sets, not multisets)
+			}
+			int insertion = -index - 1;
+			int moved = Math.min(size, k - 1) - insertion;
+			System.arraycopy(smallest, insertion, smallest, insertion + 1, moved);
+			smallest[insertion] = hash;
+			size = Math.min(size + 1, k);
+		}
+		return Arrays.copyOf(smallest, size);
+	}
+	
+}
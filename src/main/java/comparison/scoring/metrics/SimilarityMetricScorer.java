@@ -1,7 +1,7 @@
 package comparison.scoring.metrics;
 
+import ast.TypeFeatures;
 import org.apache.commons.text.similarity.SimilarityScore;
-import spoon.reflect.declaration.CtType;
 
 public abstract class SimilarityMetricScorer extends MetricScorer {
 	
@@ -13,9 +13,9 @@ public abstract class SimilarityMetricScorer extends MetricScorer {
 	}
 	
 	@Override
-	protected double computeComparisonScore(CtType<?> type1, CtType<?> type2) {
+	protected double computeComparisonScore(TypeFeatures type1, TypeFeatures type2) {
 		// TODO: SimilarityScore<Double> might have values > 1 (see interface documentation)
-		return 1 - similarityScore.apply(type1.toString(), type2.toString());
+		return 1 - similarityScore.apply(type1.getSource(), type2.getSource());
 	}
 	
 }
@@ -1,9 +1,9 @@
 package detection;
 
 import comparison.scoring.metrics.MetricScorer;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public class AvgPlagiarismDetection implements PlagiarismDetection {
 	
@@ -14,9 +14,37 @@ public class AvgPlagiarismDetection implements PlagiarismDetection {
 	}
 	
 	@Override
-	public boolean isPlagiarism(List<Pair<MetricScorer, Double>> metrics) {
-		double avg = metrics.stream().mapToDouble(Pair::getRight).average().orElseThrow();
-		return avg < threshold;
+	public boolean isPlagiarism(List<MetricScorer> metricScorers, double[] scores, int offset) {
+		if (metricScorers.isEmpty()) {
+			throw new NoSuchElementException("no metrics to average");
+		}
+		double sum = 0;
+		for (int i = offset; i < offset + metricScorers.size(); i++) {
+			sum += scores[i];
+		}
+		return sum / metricScorers.size() < threshold;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Since every missing score is at least 0, the average of all scores is at least the sum of the computed scores
+	 * divided by the number of all metrics, so plagiarism is no longer possible once this lower bound reaches the
+	 * threshold. In this case, the sum computed in {@link #isPlagiarism(List, double[], int)} is {@link Double#NaN},
+	 * which is never less than the threshold.
+	 */
+	@Override
+	public boolean canBePlagiarism(List<MetricScorer> metricScorers, double[] scores, int offset) {
+		if (metricScorers.isEmpty()) {
+			throw new NoSuchElementException("no metrics to average");
+		}
+		double lowerBound = 0;
+		for (int i = offset; i < offset + metricScorers.size(); i++) {
+			if (!Double.isNaN(scores[i])) {
+				lowerBound += scores[i];
+			}
+		}
+		return lowerBound / metricScorers.size() < threshold;
 	}
 	
 }
@@ -7,6 +7,43 @@ import java.util.List;
 
 public interface PlagiarismDetection {
 	
-	boolean isPlagiarism(List<Pair<MetricScorer, Double>> metrics);
+	/**
+	 * Returns whether the scores of a single type comparison indicate plagiarism, where the scores are read from
+	 * <code>scores</code> starting at index <code>offset</code>, and the {@link MetricScorer} of the <code>i</code>-th
+	 * score is <code>metricScorers.get(i)</code>. This allows to check the scores of a row of a
+	 * {@link comparison.ComparisonTable} (see {@link comparison.ComparisonTable#getScores()}) or of a
+	 * {@link comparison.TypeComparison} (see {@link comparison.TypeComparison#getScores()}) without copying or boxing
+	 * them.
+	 *
+	 * @param metricScorers The {@link MetricScorer}s of the scores
+	 * @param scores        The array that contains the scores
+	 * @param offset        The index of the first score in <code>scores</code>
+	 * @return Whether plagiarism was detected
+	 */
+	boolean isPlagiarism(List<MetricScorer> metricScorers, double[] scores, int offset);
+	
+	/**
+	 * Returns whether the scores of a single type comparison can still indicate plagiarism (see
+	 * {@link #isPlagiarism(List, double[], int)}) if only some of them are computed so far, where all scores that are
+	 * not computed yet are {@link Double#NaN}. If this method returns <code>false</code>, the remaining scores do not
+	 * have to be computed (see {@link comparison.Comparer#setEarlyExitDetection(PlagiarismDetection)}), so
+	 * implementations must only return <code>false</code> if no values of the missing scores can lead to plagiarism,
+	 * where every score is assumed to be non-negative. Moreover, {@link #isPlagiarism(List, double[], int)} must then
+	 * return <code>false</code> for these incomplete scores as well.
+	 * <p>
+	 * The default implementation always returns <code>true</code>, i.e., all scores are always computed.
+	 *
+	 * @param metricScorers The {@link MetricScorer}s of the scores
+	 * @param scores        The array that contains the scores, where missing scores are {@link Double#NaN}
+	 * @param offset        The index of the first score in <code>scores</code>
+	 * @return Whether plagiarism can still be detected once all scores are computed
+	 */
+	default boolean canBePlagiarism(List<MetricScorer> metricScorers, double[] scores, int offset) {
+		return true;
+	}
+	
+	default boolean isPlagiarism(List<Pair<MetricScorer, Double>> metrics) {
+		return isPlagiarism(metrics.stream().map(Pair::getLeft).toList(), metrics.stream().mapToDouble(Pair::getRight).toArray(), 0);
+	}
 	
 }
@@ -1,8 +1,11 @@
 package detection;
 
+import comparison.ComparisonSink;
+import comparison.ComparisonTable;
 import comparison.FolderComparison;
 import comparison.TypeComparison;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -34,22 +37,83 @@ public class PlagiarismDetector {
 	public List<FolderComparison> detectPlagiarism(List<FolderComparison> comparisons) {
 		List<FolderComparison> detected = new ArrayList<>();
 		for (FolderComparison fc : comparisons) {
-			// Do not change the passed FolderComparison objects, so create a copy and only add those TypeComparisons
-			// that were identified as plagiarism (and only collect a FolderComparison if there is at least one such
-			// identification of plagiarism)
-			boolean found = false;
-			FolderComparison fcCopy = new FolderComparison(fc.getFolder1(), fc.getFolder2());
-			for (TypeComparison tc : fc.getTypeComparisons()) {
-				if (plagiarismDetection.isPlagiarism(tc.getMetrics())) {
-					found = true;
-					fcCopy.addTypeComparison(tc);
-				}
-			}
-			if (found) {
-				detected.add(fcCopy);
+			FolderComparison fcDetected = detectPlagiarism(fc);
+			if (fcDetected != null) {
+				detected.add(fcDetected);
 			}
 		}
 		return detected;
 	}
 	
+	/**
+	 * For the specified <code>comparison</code>, returns a copy that only contains those {@link TypeComparison}s where
+	 * the currently set {@link PlagiarismDetector} detected plagiarism, or <code>null</code> if there are no such
+	 * {@link TypeComparison}s. The passed <code>comparison</code> object is not changed.
+	 *
+	 * @param comparison The comparison to check for plagiarism
+	 * @return A copy of <code>comparison</code> with only those {@link TypeComparison}s where plagiarism was detected,
+	 * or <code>null</code> if no plagiarism was detected
+	 */
+	public FolderComparison detectPlagiarism(FolderComparison comparison) {
+		// Do not change the passed FolderComparison object, so create a copy and only add those TypeComparisons that
+		// were identified as plagiarism (and only return the copy if there is at least one such identification of
+		// plagiarism)
+		boolean found = false;
+		FolderComparison fcCopy = new FolderComparison(comparison.getFolder1(), comparison.getFolder2());
+		for (TypeComparison tc : comparison.getTypeComparisons()) {
+			if (plagiarismDetection.isPlagiarism(tc.getMetricScorers(), tc.getScores(), 0)) {
+				found = true;
+				fcCopy.addTypeComparison(tc);
+			}
+		}
+		return found ? fcCopy : null;
+	}
+	
+	/**
+	 * For the specified <code>table</code>, returns a new table with only those rows where the currently set
+	 * {@link PlagiarismDetection} detected plagiarism. The scores are checked directly in the columns of the table,
+	 * without creating any {@link FolderComparison}s or {@link TypeComparison}s. The passed <code>table</code> is not
+	 * changed.
+	 *
+	 * @param table The table to check for plagiarism
+	 * @return A new table with only those rows where plagiarism was detected
+	 */
+	public ComparisonTable detectPlagiarism(ComparisonTable table) {
+		int numMetrics = table.getMetricScorers().size();
+		return table.filter(row -> plagiarismDetection.isPlagiarism(table.getMetricScorers(), table.getScores(), row * numMetrics));
+	}
+	
+	/**
+	 * Returns a sink that checks every received comparison for plagiarism (see
+	 * {@link #detectPlagiarism(FolderComparison)} and {@link #detectPlagiarism(ComparisonTable)}) and forwards the
+	 * detected parts to <code>detectedSink</code>. Closing the returned sink closes <code>detectedSink</code>.
+	 *
+	 * @param detectedSink The sink that receives the detected parts of all comparisons
+	 * @return A sink that detects plagiarism in all received comparisons
+	 */
+	public ComparisonSink createSink(ComparisonSink detectedSink) {
+		return new ComparisonSink() {
+			@Override
+			public void accept(FolderComparison folderComparison) {
+				FolderComparison detected = detectPlagiarism(folderComparison);
+				if (detected != null) {
+					detectedSink.accept(detected);
+				}
+			}
+			
+			@Override
+			public void accept(ComparisonTable table) {
+				ComparisonTable detected = detectPlagiarism(table);
+				if (detected.size() > 0) {
+					detectedSink.accept(detected);
+				}
+			}
+			
+			@Override
+			public void close() throws IOException {
+				detectedSink.close();
+			}
+		};
+	}
+	
 }
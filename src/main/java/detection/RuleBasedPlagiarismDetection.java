@@ -0,0 +1,231 @@
+package detection;
+
+import comparison.scoring.metrics.MetricScorer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Plagiarism detection with the same rules as <code>add_basic_plagiarism_rules</code> of
+ * <code>python/util/detection.py</code>, so the rules can be evaluated while the comparisons are computed instead of
+ * post-processing an exported CSV file. A type comparison is detected as plagiarism if any of the following rules
+ * matches (with the default thresholds in parentheses):
+ * <ul>
+ *     <li>Rule 0: The sum of the scores is 0, i.e., the types are a 1:1 copy</li>
+ *     <li>Rule 1: The count diff is small (<code>ASTCountDiffMetric &lt; 0.2</code>), and the sum of the scores is
+ *     small (<code>&lt; 0.05</code>)</li>
+ *     <li>Rule 2: The count diff is small, and at least a minimum number of the other scores (3) are exactly 0</li>
+ *     <li>Rule 3: The count diff is small, and the renamed diff is small (<code>RenamedASTDiffMetric &lt; 0.01</code>)</li>
+ * </ul>
+ * Just like in the Python rules, the sum and the number of zero scores only include the fixed list of metrics
+ * {@link #RULE_METRICS} (the default metrics, see
+ * {@link comparison.Comparer#createDefaultMetricScorers(comparison.scoring.ASTDiffCache)}), so additional metrics
+ * (e.g., specified with <code>--metrics</code>) do not change the results. All of these metrics must be available.
+ * <p>
+ * The rules are evaluated in a short-circuit way: If the count diff is not small, none of the rules can match, so no
+ * other scores are checked at all. If some scores are not computed yet, the bounds of the rules are checked instead
+ * (see {@link #canBePlagiarism(List, double[], int)}), where the count diff alone rules out most comparisons.
+ */
+public class RuleBasedPlagiarismDetection implements PlagiarismDetection {
+	
+	public static final String COUNT_METRIC = "ASTCountDiffMetric";
+	public static final String RENAMED_DIFF_METRIC = "RenamedASTDiffMetric";
+	/**
+	 * The metrics of the sum and the number of zero scores (<code>metrics</code> of the Python rules).
+	 */
+	public static final List<String> RULE_METRICS = List.of("ASTDiffMetric", RENAMED_DIFF_METRIC, COUNT_METRIC,
+			"JaccardMetric", "RenamedJaccardMetric", "JaroWinklerMetric", "RenamedJaroWinklerMetric");
+			
+	/**
+	 * The indices of the rule metrics in a list of {@link MetricScorer}s.
+	 *
+	 * @param metricScorers The list the indices refer to (compared by identity)
+	 * @param count         The index of {@value #COUNT_METRIC}
+	 * @param renamedDiff   The index of {@value #RENAMED_DIFF_METRIC}
+	 * @param ruleMetrics   The indices of all {@link #RULE_METRICS}
+	 */
+	private record MetricIndices(List<MetricScorer> metricScorers, int count, int renamedDiff, int[] ruleMetrics) {
+		
+		static MetricIndices of(List<MetricScorer> metricScorers) {
+			int[] ruleMetrics = new int[RULE_METRICS.size()];
+			for (int i = 0; i < ruleMetrics.length; i++) {
+				ruleMetrics[i] = indexOf(metricScorers, RULE_METRICS.get(i));
+			}
+			return new MetricIndices(metricScorers, indexOf(metricScorers, COUNT_METRIC),
+					indexOf(metricScorers, RENAMED_DIFF_METRIC), ruleMetrics);
+		}
+		
+	}
+	
+	private static final Set<String> PROPERTY_NAMES = Set.of("maxCountDiff", "maxSum", "minZeroMetrics", "maxRenamedDiff");
+	
+	private final double maxCountDiff;
+	private final double maxSum;
+	private final int minZeroMetrics;
+	private final double maxRenamedDiff;
+	/**
+	 * The indices of the most recently used metric list. All comparisons of a single run usually share the same list,
+	 * so the indices are only computed once instead of for every comparison.
+	 */
+	private volatile MetricIndices metricIndices;
+	
+	/**
+	 * Creates a new instance with the same thresholds as the Python rules.
+	 */
+	public RuleBasedPlagiarismDetection() {
+		this(0.2, 0.05, 3, 0.01);
+	}
+	
+	/**
+	 * Creates a new instance using the specified thresholds (all of them are exclusive).
+	 *
+	 * @param maxCountDiff   The threshold of {@value #COUNT_METRIC} for rules 1 to 3, which must be positive
+	 * @param maxSum         The threshold of the sum of the scores for rule 1
+	 * @param minZeroMetrics The minimum number of scores (other than {@value #COUNT_METRIC}) that must be 0 for rule 2
+	 * @param maxRenamedDiff The threshold of {@value #RENAMED_DIFF_METRIC} for rule 3
+	 */
+	public RuleBasedPlagiarismDetection(double maxCountDiff, double maxSum, int minZeroMetrics, double maxRenamedDiff) {
+		// A positive maxCountDiff is required for rule 0 to imply a small count diff (see getMatchingRule)
+		if (maxCountDiff <= 0) {
+			throw new IllegalArgumentException("maxCountDiff must be positive");
+		}
+		if (maxSum < 0 || minZeroMetrics < 1 || maxRenamedDiff < 0) {
+			throw new IllegalArgumentException("thresholds must not be negative and minZeroMetrics must be at least 1");
+		}
+		this.maxCountDiff = maxCountDiff;
+		this.maxSum = maxSum;
+		this.minZeroMetrics = minZeroMetrics;
+		this.maxRenamedDiff = maxRenamedDiff;
+	}
+	
+	/**
+	 * Creates a new instance with the thresholds of the specified rules file, which is a properties file (see
+	 * {@link Properties#load(Reader)}) with the optional keys <code>maxCountDiff</code>, <code>maxSum</code>,
+	 * <code>minZeroMetrics</code> and <code>maxRenamedDiff</code> (see
+	 * {@link #RuleBasedPlagiarismDetection(double, double, int, double)}). Missing keys use the default thresholds
+	 * (see {@link #RuleBasedPlagiarismDetection()}).
+	 *
+	 * @param rulesFile The properties file with the thresholds
+	 * @return A new instance with the thresholds of <code>rulesFile</code>
+	 * @throws IOException In case reading <code>rulesFile</code> fails
+	 */
+	public static RuleBasedPlagiarismDetection fromRulesFile(Path rulesFile) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(rulesFile)) {
+			properties.load(reader);
+		}
+		for (String name : properties.stringPropertyNames()) {
+			if (!PROPERTY_NAMES.contains(name)) {
+				throw new IllegalArgumentException("unknown rule property '" + name + "' (available properties: " + PROPERTY_NAMES + ")");
+			}
+		}
+		return new RuleBasedPlagiarismDetection(
+				Double.parseDouble(properties.getProperty("maxCountDiff", "0.2")),
+				Double.parseDouble(properties.getProperty("maxSum", "0.05")),
+				Integer.parseInt(properties.getProperty("minZeroMetrics", "3")),
+				Double.parseDouble(properties.getProperty("maxRenamedDiff", "0.01"))
+		);
+	}
+	
+	@Override
+	public boolean isPlagiarism(List<MetricScorer> metricScorers, double[] scores, int offset) {
+		return getMatchingRule(metricScorers, scores, offset) >= 0;
+	}
+	
+	/**
+	 * Returns the first rule that matches the scores of a single type comparison (see
+	 * {@link #isPlagiarism(List, double[], int)} for the parameters), which is useful as an additional distinction of
+	 * the detected comparisons (just like the <code>rule*</code> columns of the Python rules).
+	 *
+	 * @return The number of the first matching rule (0 to 3), or -1 if no rule matches
+	 */
+	public int getMatchingRule(List<MetricScorer> metricScorers, double[] scores, int offset) {
+		MetricIndices indices = getMetricIndices(metricScorers);
+		int countIndex = offset + indices.count();
+		int renamedDiffIndex = offset + indices.renamedDiff();
+		// Short-circuit: All rules require a small count diff (rule 0 as well, since its count diff is 0)
+		if (!(scores[countIndex] < maxCountDiff)) {
+			return -1;
+		}
+		double sum = 0;
+		int zeroMetrics = 0;
+		for (int ruleMetric : indices.ruleMetrics()) {
+			int i = offset + ruleMetric;
+			sum += scores[i];
+			if (i != countIndex && scores[i] == 0) {
+				zeroMetrics++;
+			}
+		}
+		if (sum == 0) {
+			return 0;
+		}
+		if (sum < maxSum) {
+			return 1;
+		}
+		if (zeroMetrics >= minZeroMetrics) {
+			return 2;
+		}
+		if (scores[renamedDiffIndex] < maxRenamedDiff) {
+			return 3;
+		}
+		return -1;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A missing count diff does not rule out anything. Otherwise, rule 0 and 1 are still possible if the sum of the
+	 * computed scores is small enough, rule 2 is still possible if the number of zero scores and missing scores is
+	 * large enough, and rule 3 is still possible if the renamed diff is missing or small enough.
+	 */
+	@Override
+	public boolean canBePlagiarism(List<MetricScorer> metricScorers, double[] scores, int offset) {
+		MetricIndices indices = getMetricIndices(metricScorers);
+		int countIndex = offset + indices.count();
+		int renamedDiffIndex = offset + indices.renamedDiff();
+		if (scores[countIndex] >= maxCountDiff) {
+			return false;
+		}
+		double sum = 0;
+		int possibleZeroMetrics = 0;
+		for (int ruleMetric : indices.ruleMetrics()) {
+			int i = offset + ruleMetric;
+			if (Double.isNaN(scores[i])) {
+				if (i != countIndex) {
+					possibleZeroMetrics++;
+				}
+			} else {
+				sum += scores[i];
+				if (i != countIndex && scores[i] == 0) {
+					possibleZeroMetrics++;
+				}
+			}
+		}
+		return sum == 0 || sum < maxSum || possibleZeroMetrics >= minZeroMetrics
+				|| Double.isNaN(scores[renamedDiffIndex]) || scores[renamedDiffIndex] < maxRenamedDiff;
+	}
+	
+	private MetricIndices getMetricIndices(List<MetricScorer> metricScorers) {
+		MetricIndices indices = metricIndices;
+		if (indices == null || indices.metricScorers() != metricScorers) {
+			indices = MetricIndices.of(metricScorers);
+			metricIndices = indices;
+		}
+		return indices;
+	}
+	
+	private static int indexOf(List<MetricScorer> metricScorers, String name) {
+		for (int i = 0; i < metricScorers.size(); i++) {
+			if (metricScorers.get(i).getName().equals(name)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("rule-based detection requires the metric " + name);
+	}
+	
+}
@@ -0,0 +1,107 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hash functions for token and node kind sequences, which are shared by all components that hash n-grams (e.g.,
+ * {@link comparison.FingerprintIndex}, {@link comparison.LSHScreening} and the MinHash and Greedy String Tiling
+ * metrics), so that they all hash the same way.
+ * <p>
+ * Sequences are hashed with a polynomial hash modulo 2^64 (implicit overflow) with the base {@link #BASE}, i.e., the
+ * hash of <code>v0, v1, ..., vn</code> is <code>v0 * BASE^n + v1 * BASE^(n - 1) + ... + vn</code>. This allows
+ * computing the hashes of all n-grams of a sequence in linear time by rolling the hash over the sequence (see
+ * {@link #roll(long, long, long, long)}).
+ * <p>
+ * In addition, this class provides the cryptographic hash (SHA-256) that identifies contents across runs, e.g., the
+ * entries of {@link ast.ASTCache} or identical folders (see {@link #sha256(String)}).
+ */
+public class Hashing {
+	
+	/**
+	 * The base of the polynomial hash (a large prime).
+	 */
+	public static final long BASE = 1_000_003L;
+	
+	private Hashing() {
+	}
+	
+	/**
+	 * Returns the polynomial hash of <code>values[start]</code> to <code>values[start + length - 1]</code>.
+	 */
+	public static long hash(int[] values, int start, int length) {
+		long hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = append(hash, values[i]);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns the polynomial hash of the sequence of <code>hash</code> followed by <code>value</code>.
+	 */
+	public static long append(long hash, long value) {
+		return hash * BASE + value;
+	}
+	
+	/**
+	 * Returns the factor of the first value in the hash of a sequence of <code>length</code> values, which is
+	 * <code>BASE^(length - 1)</code> (see {@link #roll(long, long, long, long)}).
+	 */
+	public static long highestPower(int length) {
+		long power = 1;
+		for (int i = 1; i < length; i++) {
+			power *= BASE;
+		}
+		return power;
+	}
+	
+	/**
+	 * Returns the hash of the next n-gram, i.e., the n-gram of <code>hash</code> without its first value
+	 * <code>removed</code>, followed by <code>added</code>.
+	 *
+	 * @param hash         The hash of the current n-gram
+	 * @param removed      The first value of the current n-gram
+	 * @param added        The value after the current n-gram
+	 * @param highestPower The highest power of the n-gram length (see {@link #highestPower(int)})
+	 * @return The hash of the next n-gram
+	 */
+	public static long roll(long hash, long removed, long added, long highestPower) {
+		return append(hash - removed * highestPower, added);
+	}
+	
+	/**
+	 * Spreads the bits of a hash (finalizer of MurmurHash3), which is required whenever minimum hashes are selected
+	 * (e.g., for winnowing or MinHash), since the polynomial hashes are not distributed uniformly.
+	 */
+	public static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	/**
+	 * Returns a new SHA-256 digest, e.g., for hashing the contents of multiple files incrementally.
+	 */
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform implementation is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Returns the SHA-256 hash of the UTF-8 bytes of <code>s</code> as a lowercase hexadecimal string.
+	 */
+	public static String sha256(String s) {
+		return HexFormat.of().formatHex(sha256().digest(s.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+}
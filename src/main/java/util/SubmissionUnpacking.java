@@ -1,6 +1,7 @@
 package util;
 
 import net.lingala.zip4j.ZipFile;
+import net.lingala.zip4j.model.FileHeader;
 import net.sf.sevenzipjbinding.ExtractOperationResult;
 import net.sf.sevenzipjbinding.IInArchive;
 import net.sf.sevenzipjbinding.SevenZip;
@@ -8,22 +9,34 @@ import net.sf.sevenzipjbinding.SevenZipException;
 import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
 import net.sf.sevenzipjbinding.simple.ISimpleInArchive;
 import net.sf.sevenzipjbinding.simple.ISimpleInArchiveItem;
+import net.sf.sevenzipjbinding.util.ByteArrayStream;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 public class SubmissionUnpacking {
@@ -38,6 +51,23 @@ public class SubmissionUnpacking {
 		return unpackMoodleSubmissions(submissionsZip, Path.of(submissionsZip + "_UNPACKED"));
 	}
 	
+	/**
+	 * Same as {@link #unpackMoodleSubmissions(Path submissionsZip, Path unpackDir, boolean parallel, boolean javaOnly)}
+	 * with <code>unpackDir</code> set to <code>submissionsZip</code> with the additional postfix
+	 * <code>"_UNPACKED"</code>.
+	 */
+	public static List<String> unpackMoodleSubmissions(Path submissionsZip, boolean parallel, boolean javaOnly) throws IOException {
+		return unpackMoodleSubmissions(submissionsZip, Path.of(submissionsZip + "_UNPACKED"), parallel, javaOnly);
+	}
+	
+	/**
+	 * Same as {@link #unpackMoodleSubmissions(Path submissionsZip, Path unpackDir, boolean parallel, boolean javaOnly)}
+	 * without parallelism and with all entries of the student submission archives.
+	 */
+	public static List<String> unpackMoodleSubmissions(Path submissionsZip, Path unpackDir) throws IOException {
+		return unpackMoodleSubmissions(submissionsZip, unpackDir, false, false);
+	}
+	
 	/**
 	 * Unpacks the ZIP file containing all Moodle submissions <code>submissionsZip</code> to the directory specified by
 	 * <code>unpackDir</code> and returns a list of all student submission directories that each contain the individual
@@ -52,10 +82,13 @@ public class SubmissionUnpacking {
 	 *
 	 * @param submissionsZip The path to the ZIP file containing all Moodle submission
 	 * @param unpackDir      The path to the directory where the ZIP file should be unpacked to
+	 * @param parallel       Whether to unpack the student submission archives in parallel
+	 * @param javaOnly       Whether to only unpack the Java source files (<code>.java</code>) of the student
+	 *                       submission archives, which are the only files that are needed for the comparison
 	 * @return A list of all student submission directories
 	 * @throws IOException In case any of the IO operations fail (creating directory, unpacking, writing data)
 	 */
-	public static List<String> unpackMoodleSubmissions(Path submissionsZip, Path unpackDir) throws IOException {
+	public static List<String> unpackMoodleSubmissions(Path submissionsZip, Path unpackDir, boolean parallel, boolean javaOnly) throws IOException {
 		File unpackDirFile = unpackDir.toFile();
 		if (unpackDirFile.exists()) {
 			// Without setting the read-only attribute to false, an AccessDeniedException can potentially occur for some
@@ -89,22 +122,40 @@ public class SubmissionUnpacking {
 		// Second, we need to unpack these individual student submission ZIP files to get to the actual data. For each
 		// such ZIP file, we will get a student submission directory where the unpacked contents are stored. These
 		// directories are the one that we want to ultimately return, but only if there are no archive problems. If
-		// there are, we exclude these directories from the final return list
-		Set<Path> dirsToSkip = new HashSet<>();
-		Files.walkFileTree(unpackDir, new SimpleFileVisitor<>() {
-			@Override
-			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+		// there are, we exclude these directories from the final return list. All archives are collected up front, so
+		// that the extracted files are not visited again
+		List<Path> archives;
+		try (Stream<Path> files = Files.walk(unpackDir)) {
+			archives = files.filter(Files::isRegularFile).toList();
+		}
+		Set<Path> dirsToSkip = ConcurrentHashMap.newKeySet();
+		AtomicLong entries = new AtomicLong();
+		AtomicLong bytes = new AtomicLong();
+		long start = System.nanoTime();
+		try {
+			Stream<Path> archivesStream = parallel ? archives.parallelStream() : archives.stream();
+			archivesStream.forEach(file -> {
 				try {
-					extract(file);
-				} catch (SevenZipException ex) {
-					LOGGER.error("skipping file '{}' because of archive problems: {}", file, ex.getMessage(), ex);
-					dirsToSkip.add(file.getParent().toAbsolutePath().normalize());
+					try {
+						extract(file, javaOnly, entries, bytes);
+					} catch (SevenZipException ex) {
+						LOGGER.error("skipping file '{}' because of archive problems: {}", file, ex.getMessage(), ex);
+						dirsToSkip.add(file.getParent().toAbsolutePath().normalize());
+					}
+					// We do not need the student submission ZIP file, we only need the actual data
+					Files.delete(file);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
-				// We do not need the student submission ZIP file, we only need the actual data
-				Files.delete(file);
-				return super.visitFile(file, attrs);
-			}
-		});
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		double megabytes = bytes.get() / (1024.0 * 1024.0);
+		LOGGER.info("unpacked {} submission archives ({} entries, {} MB) in {} s ({} MB/s)", archives.size(),
+				entries.get(), String.format("%.2f", megabytes), String.format("%.2f", seconds),
+				String.format("%.2f", megabytes / Math.max(seconds, 1e-9)));
 		
 		// Finally, return all the unpacked student submission directories (i.e., those without archive problems)
 		try (Stream<Path> dirs = Files.list(unpackDir)) {
@@ -115,15 +166,113 @@ public class SubmissionUnpacking {
 		}
 	}
 	
+	/**
+	 * Loads the Java source files of all Moodle submissions <code>submissionsZip</code> into memory, without extracting
+	 * anything to disk. This is the in-memory counterpart of {@link #unpackMoodleSubmissions(Path)}: Both the main
+	 * Moodle ZIP file and the individual student submission archives are read directly, and only their Java source
+	 * files (<code>.java</code>) are kept. The sources can then be parsed with
+	 * {@link ast.ASTRenamer#ASTRenamer(Map, Set, boolean, boolean)}.
+	 * <p>
+	 * The student submission directories are identified by the same strings that
+	 * {@link #unpackMoodleSubmissions(Path)} would return, so results (e.g., CSV files) of both variants can be used
+	 * interchangeably. Directories with archive problems are excluded as well.
+	 *
+	 * @param submissionsZip The path to the ZIP file containing all Moodle submission
+	 * @param parallel       Whether to read the student submission archives in parallel
+	 * @return A map of all student submission directories (in alphabetical order) to their source files, which in
+	 * turn map the file path (as if unpacked) to the source code
+	 * @throws IOException In case reading the main Moodle ZIP file fails
+	 */
+	public static Map<String, Map<String, String>> loadMoodleSubmissions(Path submissionsZip, boolean parallel) throws IOException {
+		Path unpackDir = Path.of(submissionsZip + "_UNPACKED").toAbsolutePath().normalize();
+		// The student submission archives are read sequentially, since the ZIP file does not support concurrent reads.
+		// Only the extraction of their content happens in parallel
+		Map<String, List<byte[]>> archives = new TreeMap<>();
+		try (ZipFile zipFile = new ZipFile(submissionsZip.toString())) {
+			for (FileHeader header : zipFile.getFileHeaders()) {
+				Path path = Path.of(header.getFileName());
+				// Same as after unpacking: Only the archives inside the submission directories are relevant
+				if (header.isDirectory() || path.getNameCount() < 2) {
+					continue;
+				}
+				String dir = unpackDir.resolve(path.getName(0)).toString();
+				try (InputStream is = zipFile.getInputStream(header)) {
+					archives.computeIfAbsent(dir, d -> new ArrayList<>()).add(is.readAllBytes());
+				}
+			}
+		}
+		
+		Map<String, Map<String, String>> sources = new ConcurrentHashMap<>();
+		AtomicLong entries = new AtomicLong();
+		AtomicLong bytes = new AtomicLong();
+		long start = System.nanoTime();
+		Stream<Map.Entry<String, List<byte[]>>> archivesStream = parallel ? archives.entrySet().parallelStream() : archives.entrySet().stream();
+		archivesStream.forEach(e -> {
+			Map<String, String> dirSources = new HashMap<>();
+			try {
+				for (byte[] archive : e.getValue()) {
+					// Full paths (as if unpacked), so that the types report the same source files in both variants
+					read(archive, entries, bytes).forEach((name, code) -> dirSources.put(Path.of(e.getKey(), name).toString(), code));
+				}
+				sources.put(e.getKey(), dirSources);
+			} catch (SevenZipException ex) {
+				LOGGER.error("skipping directory '{}' because of archive problems: {}", e.getKey(), ex.getMessage(), ex);
+			}
+		});
+		double seconds = (System.nanoTime() - start) / 1e9;
+		double megabytes = bytes.get() / (1024.0 * 1024.0);
+		LOGGER.info("loaded {} submission directories ({} source files, {} MB) in {} s ({} MB/s)", sources.size(),
+				entries.get(), String.format("%.2f", megabytes), String.format("%.2f", seconds),
+				String.format("%.2f", megabytes / Math.max(seconds, 1e-9)));
+		return Collections.unmodifiableMap(new TreeMap<>(sources));
+	}
+	
+	/**
+	 * Reads the Java source files of the in-memory <code>archive</code>.
+	 *
+	 * @param archive The content of the archive file
+	 * @param entries The counter to add the number of read source files to
+	 * @param bytes   The counter to add the number of read bytes to
+	 * @return A map of the file names (with the same sanitization as in {@link #extract(Path, boolean, AtomicLong, AtomicLong)})
+	 * to the source code
+	 * @throws SevenZipException In case the archive cannot be read
+	 */
+	private static Map<String, String> read(byte[] archive, AtomicLong entries, AtomicLong bytes) throws SevenZipException {
+		Map<String, String> sources = new HashMap<>();
+		try (IInArchive inArchive = SevenZip.openInArchive(null, // Autodetect archive type
+				new ByteArrayStream(archive, false))) {
+			for (ISimpleInArchiveItem item : inArchive.getSimpleInterface().getArchiveItems()) {
+				if (item.isFolder() || !item.getPath().toLowerCase().endsWith(".java")) {
+					continue;
+				}
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				ExtractOperationResult result = item.extractSlow(data -> {
+					baos.writeBytes(data);
+					return data.length; // Return amount of consumed data
+				});
+				if (result != ExtractOperationResult.OK) {
+					throw new SevenZipException("extraction operation failed: " + result);
+				}
+				sources.put(item.getPath().replaceAll("[\\\\/:*?\"<>| ]", "_"), baos.toString(StandardCharsets.UTF_8));
+				entries.incrementAndGet();
+				bytes.addAndGet(baos.size());
+			}
+		}
+		return sources;
+	}
+	
 	/**
 	 * Extracts the archive specified by <code>archivePath</code> to the same directory where this archive resides in.
 	 *
 	 * @param archivePath The path to the archive file
+	 * @param javaOnly    Whether to only extract Java source files (<code>.java</code>)
+	 * @param entries     The counter to add the number of extracted entries to
+	 * @param bytes       The counter to add the number of extracted bytes to
 	 * @throws IOException In case any of the IO operations fail (creating directory, unpacking, writing data)
 	 * @implNote The code is based on example on
 	 * <a href="https://sevenzipjbind.sourceforge.net/extraction_snippets.html">sevenzipjbind</a>
 	 */
-	private static void extract(Path archivePath) throws IOException {
+	private static void extract(Path archivePath, boolean javaOnly, AtomicLong entries, AtomicLong bytes) throws IOException {
 		Path parent = archivePath.getParent();
 		
 		try (RandomAccessFile randomAccessFile = new RandomAccessFile(archivePath.toFile(), "r");
@@ -140,22 +289,29 @@ public class SubmissionUnpacking {
 				// Windows path characters
 				Path itemPath = parent.resolve(item.getPath().replaceAll("[\\\\/:*?\"<>| ]", "_"));
 				
-				if (!item.isFolder()) {
+				if (!item.isFolder() && (!javaOnly || item.getPath().toLowerCase().endsWith(".java"))) {
 					Files.createDirectories(itemPath.getParent());  // Create intermediate directories
 					
-					ExtractOperationResult result = item.extractSlow(data -> {
-						try (FileOutputStream fos = new FileOutputStream(itemPath.toFile())) {
-							fos.write(data);
-						} catch (IOException e) {
-							// Wrap in SevenZipException since this is the one that ISequentialOutStream.write throws
-							throw new SevenZipException("writing data failed: " + e.getMessage(), e);
-						}
-						return data.length; // Return amount of consumed data
-					});
+					// The data of a single item might be passed in multiple chunks, so the stream must stay open until
+					// the entire item is extracted
+					ExtractOperationResult result;
+					try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(itemPath))) {
+						result = item.extractSlow(data -> {
+							try {
+								os.write(data);
+							} catch (IOException e) {
+								// Wrap in SevenZipException since this is the one that ISequentialOutStream.write throws
+								throw new SevenZipException("writing data failed: " + e.getMessage(), e);
+							}
+							bytes.addAndGet(data.length);
+							return data.length; // Return amount of consumed data
+						});
+					}
 					
 					if (result != ExtractOperationResult.OK) {
 						throw new SevenZipException("extraction operation failed: " + result);
 					}
+					entries.incrementAndGet();
 				}
 			}
 		}
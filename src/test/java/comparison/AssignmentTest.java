@@ -0,0 +1,116 @@
+package comparison;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class AssignmentTest {
+	
+	@Test
+	void solvesSquareMatrix() {
+		double[][] costs = {{4, 1}, {2, 3}};
+		assertArrayEquals(new int[] {1, 0}, Assignment.solve(costs));
+		assertOptimal(costs);
+	}
+	
+	@Test
+	void prefersOptimumOverGreedyChoice() {
+		// Greedily, row 0 would take column 0 (cost 1), which forces row 1 to column 1 (cost 10)
+		double[][] costs = {{1, 2}, {2, 10}};
+		assertArrayEquals(new int[] {1, 0}, Assignment.solve(costs));
+		assertOptimal(costs);
+	}
+	
+	@Test
+	void leavesRowsUnassignedIfThereAreMoreRowsThanColumns() {
+		double[][] costs = {{5, 1}, {1, 5}, {9, 9}};
+		assertArrayEquals(new int[] {1, 0, -1}, Assignment.solve(costs));
+		assertOptimal(costs);
+	}
+	
+	@Test
+	void leavesColumnsUnusedIfThereAreMoreColumnsThanRows() {
+		double[][] costs = {{3, 2, 1}, {1, 3, 2}};
+		assertArrayEquals(new int[] {2, 0}, Assignment.solve(costs));
+		assertOptimal(costs);
+	}
+	
+	@Test
+	void solvesTies() {
+		assertOptimal(new double[][] {{1, 1}, {1, 1}});
+		assertOptimal(new double[][] {{0, 0, 0}, {0, 0, 0}});
+		assertOptimal(new double[][] {{2, 2}, {2, 2}, {2, 2}});
+		assertOptimal(new double[][] {{1, 1, 2}, {1, 1, 2}, {2, 2, 1}});
+	}
+	
+	@Test
+	void solvesSingleCell() {
+		assertArrayEquals(new int[] {0}, Assignment.solve(new double[][] {{7}}));
+	}
+	
+	@Test
+	void matchesBruteForceOnRandomMatrices() {
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			double[][] costs = new double[1 + random.nextInt(5)][1 + random.nextInt(5)];
+			for (double[] row : costs) {
+				for (int j = 0; j < row.length; j++) {
+					// Few distinct values, so that there are many ties
+					row[j] = random.nextInt(4);
+				}
+			}
+			assertOptimal(costs);
+		}
+	}
+	
+	/**
+	 * Asserts that {@link Assignment#solve(double[][])} assigns as many rows as possible to distinct columns and that
+	 * the assignment has the minimum total cost.
+	 */
+	private static void assertOptimal(double[][] costs) {
+		int columns = costs[0].length;
+		int[] assignment = Assignment.solve(costs);
+		assertEquals(costs.length, assignment.length);
+		boolean[] used = new boolean[columns];
+		int assigned = 0;
+		double cost = 0;
+		for (int i = 0; i < assignment.length; i++) {
+			if (assignment[i] != -1) {
+				assertTrue(!used[assignment[i]], "column " + assignment[i] + " is assigned twice");
+				used[assignment[i]] = true;
+				assigned++;
+				cost += costs[i][assignment[i]];
+			}
+		}
+		assertEquals(Math.min(costs.length, columns), assigned);
+		assertEquals(bruteForce(costs, 0, new boolean[columns], Math.min(costs.length, columns)), cost, 1e-9);
+	}
+	
+	/**
+	 * Returns the minimum cost of assigning <code>remaining</code> of the rows from <code>row</code> on to distinct
+	 * columns that are not <code>used</code> by trying all assignments.
+	 */
+	private static double bruteForce(double[][] costs, int row, boolean[] used, int remaining) {
+		if (remaining == 0) {
+			return 0;
+		}
+		if (costs.length - row < remaining) {
+			return Double.POSITIVE_INFINITY;
+		}
+		// Leave the row unassigned
+		double min = bruteForce(costs, row + 1, used, remaining);
+		for (int j = 0; j < used.length; j++) {
+			if (!used[j]) {
+				used[j] = true;
+				min = Math.min(min, costs[row][j] + bruteForce(costs, row + 1, used, remaining - 1));
+				used[j] = false;
+			}
+		}
+		return min;
+	}
+	
+}
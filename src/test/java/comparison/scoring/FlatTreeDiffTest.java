@@ -0,0 +1,124 @@
+package comparison.scoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ast.FlatTree;
+import gumtree.spoon.AstComparator;
+import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtClass;
+
+import java.util.List;
+
+class FlatTreeDiffTest {
+	
+	private static final String ORIGINAL = """
+			class A {
+				int sum(int[] values) {
+					int sum = 0;
+					for (int value : values) {
+						sum += value;
+					}
+					return sum;
+				}
+				
+				int max(int a, int b) {
+					if (a > b) {
+						return a;
+					}
+					return b;
+				}
+			}
+			""";
+			
+	/**
+	 * Modified versions of {@link #ORIGINAL} (a renamed variable, a changed literal, an inserted statement, a deleted
+	 * declaration, swapped statements and reordered methods), on which the diffs are compared to GumTree.
+	 */
+	private static final List<String> MODIFIED = List.of(ORIGINAL.replace("sum", "total"), ORIGINAL.replace("= 0", "= 1"),
+			ORIGINAL.replace("return sum;", "System.out.println(sum);\n\t\treturn sum;"),
+			ORIGINAL.replace("int sum = 0;", ""), ORIGINAL.replace("\t\t\treturn a;\n\t\t}\n\t\treturn b;",
+					"\t\t\treturn b;\n\t\t}\n\t\treturn a;"), """
+					class A {
+						int max(int a, int b) {
+							if (a > b) {
+								return a;
+							}
+							return b;
+						}
+						
+						int sum(int[] values) {
+							int sum = 0;
+							for (int value : values) {
+								sum += value;
+							}
+							return sum;
+						}
+					}
+					""");
+	/**
+	 * {@link #ORIGINAL} with the for-each loop replaced by a counting loop, i.e., by a statement of a different kind.
+	 */
+	private static final String REPLACED_LOOP = ORIGINAL.replace("for (int value : values) {\n\t\t\tsum += value;",
+			"for (int i = 0; i < values.length; i++) {\n\t\t\tsum += values[i];");
+			
+	@Test
+	void identicalTreesHaveNoOperations() {
+		assertEquals(0, rootOperations(ORIGINAL, ORIGINAL));
+		for (String modified : MODIFIED) {
+			assertEquals(0, rootOperations(modified, modified));
+		}
+	}
+	
+	@Test
+	void insertedStatementIsOneOperation() {
+		assertEquals(1, rootOperations(ORIGINAL, ORIGINAL.replace("return sum;", "sum++;\n\t\treturn sum;")));
+	}
+	
+	@Test
+	void deletedStatementIsOneOperation() {
+		assertEquals(1, rootOperations(ORIGINAL.replace("return sum;", "sum++;\n\t\treturn sum;"), ORIGINAL));
+	}
+	
+	@Test
+	void movedStatementIsOneOperation() {
+		String source = "class B { void m() { a(1); b(2); c(3); } }";
+		assertEquals(1, rootOperations(source, source.replace("a(1); b(2); c(3);", "b(2); c(3); a(1);")));
+	}
+	
+	@Test
+	void updatedLiteralIsOneOperation() {
+		assertEquals(1, rootOperations(ORIGINAL, ORIGINAL.replace("= 0", "= 1")));
+	}
+	
+	@Test
+	void agreesWithGumTree() {
+		AstComparator comparator = new AstComparator();
+		CtClass<?> original = Launcher.parseClass(ORIGINAL);
+		for (String source : MODIFIED) {
+			CtClass<?> modified = Launcher.parseClass(source);
+			int expected = comparator.compare(original, modified).getRootOperations().size();
+			int actual = FlatTreeDiff.rootOperations(FlatTree.of(original), FlatTree.of(modified));
+			assertTrue(Math.abs(actual - expected) <= 1,
+					"expected " + expected + " (+-1) root operations, but was " + actual + " for:\n" + source);
+		}
+	}
+	
+	@Test
+	void replacedStatementHasFewerOperationsThanGumTree() {
+		// GumTree moves the descendants of the deleted statement into the inserted one (one operation per moved or
+		// updated subtree), while only nodes of the same kind are matched bottom-up (see FlatTreeDiff)
+		CtClass<?> original = Launcher.parseClass(ORIGINAL);
+		CtClass<?> modified = Launcher.parseClass(REPLACED_LOOP);
+		int gumTree = new AstComparator().compare(original, modified).getRootOperations().size();
+		int actual = FlatTreeDiff.rootOperations(FlatTree.of(original), FlatTree.of(modified));
+		assertTrue(actual >= 2 && actual <= gumTree, "expected 2 to " + gumTree + " root operations, but was " + actual);
+	}
+	
+	private static int rootOperations(String source1, String source2) {
+		return FlatTreeDiff.rootOperations(FlatTree.of(Launcher.parseClass(source1)),
+				FlatTree.of(Launcher.parseClass(source2)));
+	}
+	
+}